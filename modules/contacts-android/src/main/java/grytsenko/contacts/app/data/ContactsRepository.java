@@ -17,32 +17,31 @@ package grytsenko.contacts.app.data;
 
 import static java.text.MessageFormat.format;
 import static java.util.Collections.singletonList;
+import grytsenko.contacts.api.Changes;
 import grytsenko.contacts.api.Contact;
 import grytsenko.contacts.app.R;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
 
 import org.springframework.http.HttpBasicAuthentication;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.converter.json.MappingJacksonHttpMessageConverter;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.SharedPreferences;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -51,12 +50,21 @@ import android.util.Log;
  * 
  * <p>
  * We access repository through REST API.
+ * 
+ * <p>
+ * Repository remembers ETags of the received data and sends them back, so
+ * server does not send data, that was not modified.
  */
 public final class ContactsRepository {
 
     private static final String TAG = ContactsRepository.class.getName();
 
+    private static final String VALIDATORS = "validators";
+
+    private static final MediaType PHOTO = new MediaType("image", "*");
+
     private Context context;
+    private SharedPreferences validators;
 
     /**
      * Creates a client in the given context.
@@ -66,6 +74,8 @@ public final class ContactsRepository {
      */
     public ContactsRepository(Context context) {
         this.context = context;
+        this.validators = context.getSharedPreferences(VALIDATORS,
+                Context.MODE_PRIVATE);
     }
 
     /**
@@ -91,7 +101,7 @@ public final class ContactsRepository {
         Log.d(TAG, format("Get contact {0}.", username));
 
         URI url = buildUrl(context.getString(R.string.rest_path_my));
-        return doGet(url, username, password, Contact.class);
+        return doGet(url, username, password, Contact.class, false);
     }
 
     /**
@@ -102,7 +112,8 @@ public final class ContactsRepository {
      * @param password
      *            the password of user.
      * 
-     * @return the contacts of coworkers.
+     * @return the contacts of coworkers or <code>null</code> if they were
+     *         not modified since the last request.
      * 
      * @throws NotAvailableException
      *             if repository is not available.
@@ -114,80 +125,233 @@ public final class ContactsRepository {
         Log.d(TAG, format("Get coworkers of {0}.", username));
 
         URI url = buildUrl(context.getString(R.string.rest_path_coworkers));
-        return doGet(url, username, password, Contact[].class);
+        return doGet(url, username, password, Contact[].class, true);
+    }
+
+    /**
+     * Returns the version of coworkers, that were received last time.
+     * 
+     * @param username
+     *            the name of user.
+     * 
+     * @return the version of coworkers or <code>null</code> if it is unknown.
+     */
+    public String getCoworkersVersion(String username)
+            throws NotAvailableException {
+        URI url = buildUrl(context.getString(R.string.rest_path_coworkers));
+        String etag = validators.getString(getValidatorKey(username, url),
+                null);
+        if (etag == null) {
+            return null;
+        }
+
+        return etag.replace("\"", "");
     }
 
     /**
-     * Downloads photo.
+     * Gets the current version of coworkers from server.
      * 
-     * @param url
-     *            the URL of photo.
+     * <p>
+     * Server does not load contacts to get version, so this request is cheap.
+     * 
+     * @param username
+     *            the name of user.
+     * @param password
+     *            the password of user.
      * 
-     * @return the loaded photo.
+     * @return the current version of coworkers.
      * 
      * @throws NotAvailableException
-     *             if photo could not be loaded or has invalid format.
+     *             if repository is not available.
+     * @throws NotAuthorizedException
+     *             if user is not authorized to use repository.
      */
-    public Bitmap getPhoto(String url) throws NotAvailableException {
-        if (TextUtils.isEmpty(url)) {
-            throw new IllegalArgumentException("URL not defined.");
+    public String getLatestCoworkersVersion(String username, String password)
+            throws NotAvailableException, NotAuthorizedException {
+        Log.d(TAG, format("Get version of coworkers of {0}.", username));
+
+        URI url = buildUrl(context
+                .getString(R.string.rest_path_coworkers_version));
+        String version = doGet(url, username, password, String.class,
+                MediaType.TEXT_PLAIN, false);
+        if (TextUtils.isEmpty(version)) {
+            throw new NotAvailableException("Version not loaded.");
         }
+        return version.trim();
+    }
 
-        Log.d(TAG, format("Load photo from {0}.", url));
-        try {
-            URL validUrl = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) validUrl
-                    .openConnection();
-            try {
-                InputStream stream = connection.getInputStream();
-                Bitmap bitmap = BitmapFactory.decodeStream(stream);
-                if (bitmap == null) {
-                    throw new NotAvailableException("Invalid format.");
-                }
-                return bitmap;
-            } finally {
-                connection.disconnect();
-            }
-        } catch (MalformedURLException exception) {
-            throw new NotAvailableException("Invalid URL.", exception);
-        } catch (IOException exception) {
-            throw new NotAvailableException("Download failed.", exception);
+    /**
+     * Gets changes in contacts of coworkers.
+     * 
+     * @param username
+     *            the name of user.
+     * @param password
+     *            the password of user.
+     * @param version
+     *            the known version of coworkers.
+     * 
+     * @return the changes or <code>null</code> if the known version is too
+     *         old.
+     * 
+     * @throws NotAvailableException
+     *             if repository is not available.
+     * @throws NotAuthorizedException
+     *             if user is not authorized to use repository.
+     */
+    public Changes getChanges(String username, String password,
+            String version) throws NotAvailableException,
+            NotAuthorizedException {
+        if (TextUtils.isEmpty(version)) {
+            throw new IllegalArgumentException("Version not defined.");
         }
+
+        Log.d(TAG, format("Get changes of coworkers of {0} since {1}.",
+                username, version));
+
+        URI url = buildUrl(
+                context.getString(R.string.rest_path_coworkers_changes),
+                "since=" + version);
+        return doGet(url, username, password, Changes.class, false);
+    }
+
+    /**
+     * Forgets ETags of all received data.
+     * 
+     * <p>
+     * Next requests will return data, even if it was not modified.
+     */
+    public void resetValidators() {
+        Log.d(TAG, "Reset validators.");
+        validators.edit().clear().commit();
+    }
+
+    /**
+     * Gets photo of employee.
+     * 
+     * <p>
+     * Photo is resized by server, so it can be saved without decoding.
+     * 
+     * @param username
+     *            the name of user.
+     * @param password
+     *            the password of user.
+     * @param uid
+     *            the unique identifier of employee.
+     * 
+     * @return the encoded photo.
+     * 
+     * @throws NotAvailableException
+     *             if photo could not be loaded.
+     * @throws NotAuthorizedException
+     *             if user is not authorized to use repository.
+     */
+    public byte[] getPhoto(String username, String password, String uid)
+            throws NotAvailableException, NotAuthorizedException {
+        if (TextUtils.isEmpty(uid)) {
+            throw new IllegalArgumentException("UID not defined.");
+        }
+
+        Log.d(TAG, format("Load photo of {0}.", uid));
+
+        String path = format(context.getString(R.string.rest_path_photo), uid);
+        String size = context.getString(R.string.rest_photo_size);
+        URI url = buildUrl(path, "size=" + size);
+        byte[] photo = doGet(url, username, password, byte[].class, PHOTO,
+                false);
+        if (photo == null || photo.length == 0) {
+            throw new NotAvailableException("Photo not loaded.");
+        }
+        return photo;
     }
 
     private URI buildUrl(String path) throws NotAvailableException {
+        return buildUrl(path, null);
+    }
+
+    private URI buildUrl(String path, String query)
+            throws NotAvailableException {
         String scheme = context.getString(R.string.rest_scheme);
         String authority = context.getString(R.string.rest_authority);
         try {
-            return new URI(scheme, authority, path, null, null);
+            return new URI(scheme, authority, path, query, null);
         } catch (URISyntaxException exception) {
             throw new NotAvailableException("Invalid URL.", exception);
         }
     }
 
-    private static <T> T doGet(URI url, String username, String password,
-            Class<T> responseClass) throws NotAvailableException,
-            NotAuthorizedException {
+    /**
+     * Sends GET request.
+     * 
+     * @param conditional
+     *            if <code>true</code>, then ETag of the last received data is
+     *            sent to server.
+     * 
+     * @return the received data or <code>null</code> if data was not
+     *         modified or is not available anymore.
+     */
+    private <T> T doGet(URI url, String username, String password,
+            Class<T> responseClass, boolean conditional)
+            throws NotAvailableException, NotAuthorizedException {
+        return doGet(url, username, password, responseClass,
+                MediaType.APPLICATION_JSON, conditional);
+    }
+
+    /**
+     * Sends GET request, that accepts data of the given type.
+     */
+    private <T> T doGet(URI url, String username, String password,
+            Class<T> responseClass, MediaType mediaType, boolean conditional)
+            throws NotAvailableException, NotAuthorizedException {
         Log.d(TAG, format("Send GET request to {0}.", url.toString()));
 
         RestTemplate template = new RestTemplate();
         template.getMessageConverters().add(
                 new MappingJacksonHttpMessageConverter());
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(singletonList(MediaType.APPLICATION_JSON));
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(singletonList(mediaType));
         headers.setAuthorization(new HttpBasicAuthentication(username, password));
-        HttpEntity<?> request = new HttpEntity<Object>(headers);
+
+        String validatorKey = getValidatorKey(username, url);
+        if (conditional) {
+            String validator = validators.getString(validatorKey, null);
+            if (validator != null) {
+                headers.setIfNoneMatch(validator);
+            }
+        }
+
+        RequestCallback requestCallback = new RequestCallback() {
+            @Override
+            public void doWithRequest(ClientHttpRequest request)
+                    throws IOException {
+                request.getHeaders().putAll(headers);
+            }
+        };
+        ConditionalResponseExtractor<T> responseExtractor = new ConditionalResponseExtractor<T>(
+                new HttpMessageConverterExtractor<T>(responseClass,
+                        template.getMessageConverters()));
 
         try {
-            ResponseEntity<T> response = template.exchange(url, HttpMethod.GET,
-                    request, responseClass);
-            return response.getBody();
+            T data = template.execute(url, HttpMethod.GET, requestCallback,
+                    responseExtractor);
+            if (responseExtractor.isNotModified()) {
+                Log.d(TAG, "Data not modified.");
+                return null;
+            }
+
+            if (conditional) {
+                saveValidator(validatorKey, responseExtractor.getEtag());
+            }
+            return data;
         } catch (HttpClientErrorException exception) {
             if (exception.getStatusCode() == HttpStatus.UNAUTHORIZED) {
                 throw new NotAuthorizedException("Invalid credentials.",
                         exception);
             }
+            if (exception.getStatusCode() == HttpStatus.GONE) {
+                Log.d(TAG, "Data not available anymore.");
+                return null;
+            }
 
             throw new NotAvailableException("HTTP Error.", exception);
         } catch (RestClientException exception) {
@@ -197,4 +361,54 @@ public final class ContactsRepository {
         }
     }
 
+    private static String getValidatorKey(String username, URI url) {
+        return username + ' ' + url.toString();
+    }
+
+    private void saveValidator(String key, String etag) {
+        SharedPreferences.Editor editor = validators.edit();
+        if (etag != null) {
+            editor.putString(key, etag);
+        } else {
+            editor.remove(key);
+        }
+        editor.commit();
+    }
+
+    /**
+     * Extracts data only if it was modified and remembers its ETag.
+     */
+    private static class ConditionalResponseExtractor<T> implements
+            ResponseExtractor<T> {
+
+        private final ResponseExtractor<T> delegate;
+
+        private boolean notModified;
+        private String etag;
+
+        public ConditionalResponseExtractor(ResponseExtractor<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T extractData(ClientHttpResponse response) throws IOException {
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                notModified = true;
+                return null;
+            }
+
+            etag = response.getHeaders().getETag();
+            return delegate.extractData(response);
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+    }
+
 }
@@ -17,6 +17,7 @@ package grytsenko.contacts.app.service;
 
 import static java.lang.Thread.currentThread;
 import static java.text.MessageFormat.format;
+import grytsenko.contacts.api.Changes;
 import grytsenko.contacts.api.Contact;
 import grytsenko.contacts.app.R;
 import grytsenko.contacts.app.data.ContactsRepository;
@@ -30,10 +31,12 @@ import grytsenko.contacts.app.sync.SyncException;
 import grytsenko.contacts.app.sync.SyncedContact;
 import grytsenko.contacts.app.sync.SyncedGroup;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
@@ -43,8 +46,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SyncResult;
 import android.content.SyncStats;
-import android.graphics.Bitmap;
-import android.graphics.Bitmap.CompressFormat;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
@@ -95,12 +96,23 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
             checkCanceled();
 
+            Log.d(TAG, "Search contacts.");
+            Map<String, SyncedContact> syncedCoworkers = contactsManager
+                    .findAll(groupCoworkers);
+            Log.d(TAG, format("Found {0} contacts.", syncedCoworkers.size()));
+
+            if (syncedCoworkers.isEmpty() || settingsManager.isAppUpdated()) {
+                Log.d(TAG, "All contacts should be loaded.");
+                resetSyncState();
+            }
+
+            checkCanceled();
+
             Log.d(TAG, "Load contacts.");
-            Map<String, Contact> loadedCoworkers;
+            Changes changedCoworkers;
             try {
-                loadedCoworkers = loadCoworkersContacts(account);
-                Log.d(TAG,
-                        format("Loaded {0} contacts.", loadedCoworkers.size()));
+                changedCoworkers = loadCoworkersChanges(account,
+                        syncedCoworkers.keySet());
             } catch (NotAuthorizedException exception) {
                 syncResult.tooManyRetries = true;
                 Log.e(TAG, "User not authorized.", exception);
@@ -115,39 +127,11 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
             checkCanceled();
 
-            Log.d(TAG, "Search contacts.");
-            Map<String, SyncedContact> syncedCoworkers = contactsManager
-                    .findAll(groupCoworkers);
-            Log.d(TAG, format("Found {0} contacts.", syncedCoworkers.size()));
-
-            Log.d(TAG, "Sync contacts.");
-            SyncStats syncStats = syncResult.stats;
-
-            Map<String, SyncedContact> createdCoworkers = syncCreatedContacts(
-                    account, groupCoworkers, loadedCoworkers, syncedCoworkers,
-                    syncStats);
-            Log.d(TAG, format("Created {0} contacts.", syncStats.numInserts));
-
-            Map<String, SyncedContact> updatedCoworkers = syncUpdatedContacts(
-                    loadedCoworkers, syncedCoworkers, syncStats);
-            Log.d(TAG, format("Updated {0} contacts.", syncStats.numUpdates));
-
-            Map<String, SyncedContact> removedContacts = syncRemovedContacts(
-                    loadedCoworkers, syncedCoworkers, syncStats);
-            Log.d(TAG, format("Removed {0} contacts.", syncStats.numDeletes));
-
-            Log.d(TAG,
-                    format("Skipped {0} contacts.", syncStats.numSkippedEntries));
-
-            Log.d(TAG, "Prepare for further sync.");
-            syncedCoworkers.putAll(createdCoworkers);
-            syncedCoworkers.putAll(updatedCoworkers);
-            for (String uid : removedContacts.keySet()) {
-                syncedCoworkers.remove(uid);
-            }
+            syncContacts(account, groupCoworkers, changedCoworkers,
+                    syncedCoworkers, syncResult.stats);
 
             Log.d(TAG, "Sync photos.");
-            syncPhotos(syncedCoworkers);
+            syncPhotos(account, syncedCoworkers);
 
             settingsManager.updateLastSyncTime();
 
@@ -155,10 +139,59 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
             Log.d(TAG, "Sync completed.");
         } catch (CanceledException exception) {
+            resetSyncState();
             Log.w(TAG, "Sync canceled.", exception);
         }
     }
 
+    /**
+     * Synchronizes loaded changes with existing contacts.
+     * 
+     * <p>
+     * After synchronization, existing contacts are replaced by synchronized
+     * ones.
+     */
+    private void syncContacts(Account account, SyncedGroup group,
+            Changes changes, Map<String, SyncedContact> syncedContacts,
+            SyncStats syncStats) throws CanceledException {
+        Log.d(TAG, "Sync contacts.");
+
+        Map<String, Contact> loadedContacts = new HashMap<String, Contact>();
+        for (Contact contact : changes.getAdded()) {
+            loadedContacts.put(contact.getUid(), contact);
+        }
+        for (Contact contact : changes.getUpdated()) {
+            loadedContacts.put(contact.getUid(), contact);
+        }
+
+        Map<String, SyncedContact> createdContacts = syncCreatedContacts(
+                account, group, loadedContacts, syncedContacts, syncStats);
+        Log.d(TAG, format("Created {0} contacts.", syncStats.numInserts));
+
+        Map<String, SyncedContact> updatedContacts = syncUpdatedContacts(
+                loadedContacts, syncedContacts, syncStats);
+        Log.d(TAG, format("Updated {0} contacts.", syncStats.numUpdates));
+
+        Map<String, SyncedContact> removedContacts = syncRemovedContacts(
+                changes.getRemoved(), syncedContacts, syncStats);
+        Log.d(TAG, format("Removed {0} contacts.", syncStats.numDeletes));
+
+        Log.d(TAG, format("Skipped {0} contacts.", syncStats.numSkippedEntries));
+        if (syncStats.numSkippedEntries > 0) {
+            Log.d(TAG, "Skipped contacts should be loaded again.");
+            resetSyncState();
+        } else {
+            settingsManager.setSyncVersion(changes.getVersion());
+        }
+
+        Log.d(TAG, "Prepare for further sync.");
+        syncedContacts.putAll(createdContacts);
+        syncedContacts.putAll(updatedContacts);
+        for (String uid : removedContacts.keySet()) {
+            syncedContacts.remove(uid);
+        }
+    }
+
     /**
      * Synchronizes group for contacts of coworkers.
      * 
@@ -188,16 +221,23 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Loads contacts of coworkers.
+     * Loads changes in contacts of coworkers.
+     * 
+     * <p>
+     * If version of the last sync is known, then only changes since this
+     * version are loaded, if current version differs. Otherwise all contacts
+     * are loaded and compared with existing ones.
      * 
      * @param account
      *            the account of user, who performs operation.
+     * @param syncedUids
+     *            the unique identifiers of existing contacts.
      * 
-     * @return the contacts of coworkers.
+     * @return the changes in contacts of coworkers.
      */
-    private Map<String, Contact> loadCoworkersContacts(Account account)
-            throws NotAuthorizedException, NotAvailableException,
-            CanceledException {
+    private Changes loadCoworkersChanges(Account account,
+            Collection<String> syncedUids) throws NotAuthorizedException,
+            NotAvailableException, CanceledException {
         if (!isSuitableNetwork()) {
             throw new CanceledException("Not suitable network.");
         }
@@ -206,13 +246,44 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         AccountManager accountManager = AccountManager.get(getContext());
         String password = accountManager.getPassword(account);
 
+        String version = settingsManager.getSyncVersion();
+        if (version != null) {
+            String latestVersion = contactsRepository
+                    .getLatestCoworkersVersion(username, password);
+            if (version.equals(latestVersion)) {
+                Log.d(TAG, "Contacts are up to date.");
+                Changes changes = new Changes();
+                changes.setVersion(version);
+                return changes;
+            }
+
+            Changes changes = contactsRepository.getChanges(username,
+                    password, version);
+            if (changes != null) {
+                return changes;
+            }
+
+            Log.d(TAG, format("Version {0} is too old.", version));
+        }
+
         Contact[] contacts = contactsRepository
                 .getCoworkers(username, password);
-        Map<String, Contact> loadedContacts = new HashMap<String, Contact>();
+        Changes changes = new Changes();
+        changes.setVersion(contactsRepository.getCoworkersVersion(username));
+        if (contacts == null) {
+            Log.d(TAG, "Contacts are up to date.");
+            return changes;
+        }
+
+        Log.d(TAG, format("Loaded {0} contacts.", contacts.length));
+        changes.getAdded().addAll(Arrays.asList(contacts));
+
+        Set<String> removedUids = new HashSet<String>(syncedUids);
         for (Contact contact : contacts) {
-            loadedContacts.put(contact.getUid(), contact);
+            removedUids.remove(contact.getUid());
         }
-        return loadedContacts;
+        changes.getRemoved().addAll(removedUids);
+        return changes;
     }
 
     /**
@@ -298,14 +369,14 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
      * Removes obsolete contacts.
      */
     private Map<String, SyncedContact> syncRemovedContacts(
-            Map<String, Contact> loadedContacts,
+            Collection<String> removedUids,
             Map<String, SyncedContact> syncedContacts, SyncStats syncStats)
             throws CanceledException {
         Map<String, SyncedContact> removedContacts = new HashMap<String, SyncedContact>();
 
-        for (SyncedContact syncedContact : syncedContacts.values()) {
-            String uid = syncedContact.getUid();
-            if (loadedContacts.containsKey(uid)) {
+        for (String uid : removedUids) {
+            SyncedContact syncedContact = syncedContacts.get(uid);
+            if (syncedContact == null) {
                 continue;
             }
 
@@ -328,7 +399,8 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
     /**
      * Synchronizes photos.
      */
-    private void syncPhotos(Map<String, SyncedContact> syncedContacts)
+    private void syncPhotos(Account account,
+            Map<String, SyncedContact> syncedContacts)
             throws CanceledException {
         if (!settingsManager.canSyncPhotos()) {
             Log.d(TAG, "Sync of photos is disabled.");
@@ -339,7 +411,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
             checkCanceled();
 
             try {
-                syncPhoto(syncedContact);
+                syncPhoto(account, syncedContact);
             } catch (SyncException exception) {
                 Log.w(TAG,
                         format("Photo for {0} was not synced.",
@@ -351,8 +423,8 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
     /**
      * Synchronizes photo of contact.
      */
-    private void syncPhoto(SyncedContact syncedContact) throws SyncException,
-            CanceledException {
+    private void syncPhoto(Account account, SyncedContact syncedContact)
+            throws SyncException, CanceledException {
         String uid = syncedContact.getUid();
         String photoUrl = syncedContact.getPhotoUrl();
 
@@ -368,45 +440,52 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
         }
 
         Log.d(TAG, format("Load photo for contact {0}.", uid));
-        byte[] photo = loadPhoto(photoUrl);
+        byte[] photo = loadPhoto(account, uid);
         contactsManager.updatePhoto(syncedContact, photo);
     }
 
     /**
      * Loads photo for contact.
      * 
-     * @param photoUrl
-     *            the URL of photo.
+     * <p>
+     * Photo is resized by server, so it is saved as is.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * @param uid
+     *            the unique identifier of contact.
      * 
      * @return the loaded photo.
      */
-    private byte[] loadPhoto(String photoUrl) throws SyncException,
-            CanceledException {
-        if (TextUtils.isEmpty(photoUrl)) {
-            throw new IllegalArgumentException("URL is required.");
-        }
-
+    private byte[] loadPhoto(Account account, String uid)
+            throws SyncException, CanceledException {
         if (!isSuitableNetwork()) {
             throw new CanceledException("Not suitable network.");
         }
 
-        try {
-            Bitmap photo = contactsRepository.getPhoto(photoUrl);
-            ByteArrayOutputStream compressStream = new ByteArrayOutputStream();
+        String username = account.name;
+        AccountManager accountManager = AccountManager.get(getContext());
+        String password = accountManager.getPassword(account);
 
-            try {
-                photo.compress(CompressFormat.PNG, 100, compressStream);
-                return compressStream.toByteArray();
-            } finally {
-                compressStream.close();
-            }
+        try {
+            return contactsRepository.getPhoto(username, password, uid);
         } catch (NotAvailableException exception) {
             throw new SyncException("Could not download photo.", exception);
-        } catch (IOException exception) {
-            throw new SyncException("Could not convert photo.", exception);
+        } catch (NotAuthorizedException exception) {
+            throw new SyncException("Not authorized to download photo.",
+                    exception);
         }
     }
 
+    /**
+     * Forgets state of the last sync, so all contacts will be loaded next
+     * time.
+     */
+    private void resetSyncState() {
+        contactsRepository.resetValidators();
+        settingsManager.setSyncVersion(null);
+    }
+
     /**
      * Notifies user about status of synchronization.
      */
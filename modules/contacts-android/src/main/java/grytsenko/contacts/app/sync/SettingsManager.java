@@ -47,6 +47,7 @@ public class SettingsManager {
     private final String syncAnywhereKey;
     private final String useNotificationsKey;
     private final String lastSyncTimeKey;
+    private final String syncVersionKey;
 
     private final String groupCoworkersKey;
     private final String groupCoworkersDefaultValue;
@@ -71,6 +72,7 @@ public class SettingsManager {
         useNotificationsKey = context.getString(R.string.use_notifications);
 
         lastSyncTimeKey = context.getString(R.string.last_sync_time);
+        syncVersionKey = context.getString(R.string.sync_version);
 
         groupCoworkersKey = context.getString(R.string.group_coworkers);
         groupCoworkersDefaultValue = context
@@ -150,6 +152,29 @@ public class SettingsManager {
         Log.d(TAG, format("Time of last sync is {0}.", Long.toString(time)));
     }
 
+    /**
+     * Returns the version of coworkers, that were synchronized last time.
+     * 
+     * @return the version or <code>null</code> if version is unknown.
+     */
+    public String getSyncVersion() {
+        return preferences.getString(syncVersionKey, null);
+    }
+
+    /**
+     * Sets the version of synchronized coworkers.
+     * 
+     * @param version
+     *            the version or <code>null</code> if version is unknown.
+     */
+    public void setSyncVersion(String version) {
+        Editor editor = preferences.edit();
+        editor.putString(syncVersionKey, version);
+        editor.commit();
+
+        Log.d(TAG, format("Version of last sync is {0}.", version));
+    }
+
     /**
      * Checks that application was updated since the last sync.
      * 
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes in contacts since some version.
+ */
+public final class Changes implements Serializable {
+
+    private static final long serialVersionUID = -2946302813424381657L;
+
+    private String version;
+
+    private List<Contact> added = new ArrayList<Contact>();
+    private List<Contact> updated = new ArrayList<Contact>();
+    private List<String> removed = new ArrayList<String>();
+
+    public Changes() {
+    }
+
+    /**
+     * Returns the current version, that can be used to get further changes.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the current version.
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the contacts, that were added.
+     */
+    public List<Contact> getAdded() {
+        return added;
+    }
+
+    /**
+     * Sets the contacts, that were added.
+     */
+    public void setAdded(List<Contact> added) {
+        this.added = added;
+    }
+
+    /**
+     * Returns the contacts, that were updated.
+     */
+    public List<Contact> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Sets the contacts, that were updated.
+     */
+    public void setUpdated(List<Contact> updated) {
+        this.updated = updated;
+    }
+
+    /**
+     * Returns the unique identifiers of removed contacts.
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Sets the unique identifiers of removed contacts.
+     */
+    public void setRemoved(List<String> removed) {
+        this.removed = removed;
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing of attributes received from DS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EmployeeRecordMapperBenchmark {
+
+    private static final int EMPLOYEES = 256;
+
+    private EmployeeRecordMapper mapper;
+    private Attributes[] attributes;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        mapper = Employees.createMapper();
+
+        List<EmployeeRecord> records = Employees.createRecords("Kharkiv",
+                EMPLOYEES);
+        attributes = new Attributes[records.size()];
+        for (int i = 0; i < attributes.length; ++i) {
+            attributes[i] = Employees.createAttributes(records.get(i));
+        }
+    }
+
+    @Benchmark
+    public Object mapFromAttributes() throws NamingException {
+        next = (next + 1) % attributes.length;
+        return mapper.mapFromAttributes(attributes[next]);
+    }
+
+}
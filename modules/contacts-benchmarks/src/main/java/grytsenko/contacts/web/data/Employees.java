@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttributes;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Creates test data for benchmarks.
+ * 
+ * <p>
+ * Data is generated with fixed seed, so each run uses the same employees.
+ */
+public final class Employees {
+
+    private static final String[] FIRST_NAMES = { "Anton", "Oksana",
+            "Andrii", "Iryna", "Sergii", "Olena", "Dmytro", "Natalia",
+            "Taras", "Yulia", "Bohdan", "Kateryna" };
+    private static final String[] LAST_NAMES = { "Grytsenko", "Shevchenko",
+            "Kovalenko", "Bondarenko", "Tkachenko", "Kravchenko", "Oliynyk",
+            "Shevchuk", "Koval", "Polishchuk", "Bondar", "Marchenko" };
+
+    private static final long SEED = 42;
+
+    /**
+     * Creates records of employees from the same location.
+     */
+    public static List<EmployeeRecord> createRecords(String location,
+            int count) {
+        Random random = new Random(SEED);
+
+        List<EmployeeRecord> records = new ArrayList<EmployeeRecord>(count);
+        for (int i = 0; i < count; ++i) {
+            EmployeeRecord record = new EmployeeRecord();
+
+            String uid = location.toLowerCase(Locale.ROOT) + i;
+            record.setUid(uid);
+
+            record.setFirstName(pick(FIRST_NAMES, random));
+            record.setLastName(pick(LAST_NAMES, random));
+
+            record.setPhotoUrl("http://photos/" + uid + ".jpg");
+
+            record.setMail(uid + "@company.com");
+            record.setPhone("+380" + (500000000 + random.nextInt(500000000)));
+
+            record.setLocation(location);
+
+            record.setVersion("20131001" + (100000 + random.nextInt(100000)));
+
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Creates details of employee.
+     */
+    public static EmployeeDetails createDetails(EmployeeRecord record) {
+        EmployeeDetails details = BeanUtils
+                .instantiateClass(EmployeeDetails.class);
+
+        setField(details, "uid", record.getUid());
+        setField(details, "skype", record.getUid() + ".skype");
+        setField(details, "position", "Software Engineer");
+        setField(details, "version", 1);
+
+        return details;
+    }
+
+    /**
+     * Creates attributes of employee, as they are received from DS.
+     */
+    public static Attributes createAttributes(EmployeeRecord record) {
+        Attributes attrs = new BasicAttributes(true);
+
+        attrs.put("uid", record.getUid());
+        attrs.put("givenName", record.getFirstName());
+        attrs.put("sn", record.getLastName());
+        attrs.put("labeledURI", record.getPhotoUrl());
+        attrs.put("mail", record.getMail());
+        attrs.put("mobile", formatPhone(record.getPhone()));
+        attrs.put("l", record.getLocation());
+        attrs.put("modifyTimestamp", record.getVersion() + "Z");
+
+        return attrs;
+    }
+
+    /**
+     * Creates mapper for attributes created by
+     * {@link #createAttributes(EmployeeRecord)}.
+     */
+    static EmployeeRecordMapper createMapper() {
+        return new EmployeeRecordMapper("uid", "givenName", "sn",
+                "labeledURI", "mail", "mobile", "l", "modifyTimestamp");
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Formats phone as people usually write it, e.g. +38 (050) 123-45-67.
+     */
+    private static String formatPhone(String phone) {
+        return phone.substring(0, 3) + " (" + phone.substring(3, 6) + ") "
+                + phone.substring(6, 9) + "-" + phone.substring(9, 11) + "-"
+                + phone.substring(11);
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    private Employees() {
+    }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates repository that keeps details in memory instead of DB.
+ * 
+ * <p>
+ * Only methods used by services are supported.
+ */
+public final class StubEmployeeDetailsRepository {
+
+    /**
+     * Creates repository, where each employee has details.
+     */
+    public static EmployeeDetailsRepository create(
+            List<EmployeeRecord> records) {
+        final Map<String, EmployeeDetails> details = new HashMap<String, EmployeeDetails>();
+        for (EmployeeRecord record : records) {
+            details.put(record.getUid(), Employees.createDetails(record));
+        }
+
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(this, args);
+                }
+
+                String name = method.getName();
+                if ("findOne".equals(name)) {
+                    return details.get(args[0]);
+                }
+                if ("findByUidIn".equals(name)) {
+                    return findByUidIn(details, (Collection<?>) args[0]);
+                }
+
+                throw new UnsupportedOperationException(name);
+            }
+        };
+
+        return (EmployeeDetailsRepository) Proxy.newProxyInstance(
+                EmployeeDetailsRepository.class.getClassLoader(),
+                new Class<?>[] { EmployeeDetailsRepository.class }, handler);
+    }
+
+    private static List<EmployeeDetails> findByUidIn(
+            Map<String, EmployeeDetails> details, Collection<?> uids) {
+        List<EmployeeDetails> found = new ArrayList<EmployeeDetails>();
+        for (Object uid : uids) {
+            EmployeeDetails employeeDetails = details.get(uid);
+            if (employeeDetails != null) {
+                found.add(employeeDetails);
+            }
+        }
+        return found;
+    }
+
+    private StubEmployeeDetailsRepository() {
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository that keeps records in memory instead of DS.
+ * 
+ * <p>
+ * Records are passed to handlers by pages, as they are received from DS.
+ */
+public class StubEmployeeRecordRepository extends EmployeeRecordRepository {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final Map<String, EmployeeRecord> byUid = new HashMap<String, EmployeeRecord>();
+    private final List<EmployeeRecord> records;
+
+    /**
+     * Creates repository with records from single location.
+     */
+    public StubEmployeeRecordRepository(List<EmployeeRecord> records) {
+        this.records = records;
+        for (EmployeeRecord record : records) {
+            byUid.put(record.getUid(), record);
+        }
+    }
+
+    @Override
+    public EmployeeRecord findByUid(String uid) {
+        return byUid.get(uid);
+    }
+
+    @Override
+    public List<EmployeeRecord> findByLocation(String location) {
+        return records;
+    }
+
+    @Override
+    public void findByLocation(String location, EmployeeRecordHandler handler) {
+        for (int from = 0; from < records.size(); from += PAGE_SIZE) {
+            int to = Math.min(from + PAGE_SIZE, records.size());
+            handler.handle(records.subList(from, to));
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data.mapper;
+
+import grytsenko.contacts.web.data.EmployeeDetails;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.Employees;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures creation of contacts from records and details of employees.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContactMapperBenchmark {
+
+    private static final int EMPLOYEES = 256;
+
+    private EmployeeRecord[] records;
+    private EmployeeDetails[] details;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<EmployeeRecord> created = Employees.createRecords("Kharkiv",
+                EMPLOYEES);
+        records = created.toArray(new EmployeeRecord[created.size()]);
+
+        details = new EmployeeDetails[records.length];
+        for (int i = 0; i < details.length; ++i) {
+            details[i] = Employees.createDetails(records[i]);
+        }
+    }
+
+    @Benchmark
+    public Object mapWithDetails() {
+        next = (next + 1) % records.length;
+        return ContactMapper.map(records[next], details[next]);
+    }
+
+    @Benchmark
+    public Object mapWithoutDetails() {
+        next = (next + 1) % records.length;
+        return ContactMapper.map(records[next], null);
+    }
+
+}
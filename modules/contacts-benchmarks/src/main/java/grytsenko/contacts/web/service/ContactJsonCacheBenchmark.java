@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.Employees;
+import grytsenko.contacts.web.data.mapper.ContactMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares serialization of contacts of coworkers by Jackson with writing of
+ * contacts from cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContactJsonCacheBenchmark {
+
+    @Param({ "100", "1000" })
+    public int employees;
+
+    private List<Contact> contacts;
+
+    private ObjectMapper objectMapper;
+    private ContactJsonCache contactJsonCache;
+
+    private ByteArrayOutputStream stream;
+
+    @Setup
+    public void setUp() throws IOException {
+        contacts = new ArrayList<Contact>();
+        for (EmployeeRecord record : Employees.createRecords("Kharkiv",
+                employees)) {
+            contacts.add(ContactMapper.map(record,
+                    Employees.createDetails(record)));
+        }
+
+        objectMapper = new ObjectMapper();
+        contactJsonCache = new ContactJsonCache();
+        contactJsonCache.maxSize = employees;
+        contactJsonCache.writeArray(contacts, new ByteArrayOutputStream());
+
+        stream = new ByteArrayOutputStream();
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        stream.reset();
+        objectMapper.writeValue(stream, contacts);
+        return stream.size();
+    }
+
+    @Benchmark
+    public int writeFromCache() throws IOException {
+        stream.reset();
+        contactJsonCache.writeArray(contacts, stream);
+        return stream.size();
+    }
+
+}
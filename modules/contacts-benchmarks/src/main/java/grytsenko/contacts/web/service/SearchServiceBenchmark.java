@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.Employees;
+import grytsenko.contacts.web.data.StubEmployeeDetailsRepository;
+import grytsenko.contacts.web.data.StubEmployeeRecordRepository;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Measures search of coworkers, where repositories keep data in memory.
+ * 
+ * <p>
+ * So only work of service itself is measured: paging, loading of details in
+ * background and mapping of contacts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SearchServiceBenchmark {
+
+    private static final String LOCATION = "Kharkiv";
+
+    @Param({ "100", "1000", "10000" })
+    public int employees;
+
+    private SearchService searchService;
+    private ExecutorService executor;
+
+    private String employeeUid;
+
+    @Setup
+    public void setUp() {
+        List<EmployeeRecord> records = Employees.createRecords(LOCATION,
+                employees);
+        employeeUid = records.get(0).getUid();
+
+        executor = Executors.newFixedThreadPool(2);
+
+        searchService = new SearchService();
+        searchService.employeesRepository = new StubEmployeeRecordRepository(
+                records);
+        searchService.employeesDetailsRepository = StubEmployeeDetailsRepository
+                .create(records);
+        searchService.detailsFilter = new DetailsFilter();
+        searchService.detailsExecutor = new TaskExecutorAdapter(executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Object findCoworkers() {
+        return searchService.findCoworkers(employeeUid);
+    }
+
+    @Benchmark
+    public void findCoworkersByHandler(final Blackhole blackhole) {
+        searchService.findCoworkers(employeeUid, new ContactHandler() {
+            @Override
+            public void handle(Contact contact) {
+                blackhole.consume(contact);
+            }
+        });
+    }
+
+}
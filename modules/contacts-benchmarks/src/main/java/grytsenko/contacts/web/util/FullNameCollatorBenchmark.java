@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.util;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.Employees;
+import grytsenko.contacts.web.data.mapper.ContactMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sorting of contacts by full names.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FullNameCollatorBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int employees;
+
+    @Param({ "en", "uk" })
+    public String language;
+
+    private List<Contact> contacts;
+    private Locale locale;
+
+    @Setup
+    public void setUp() {
+        contacts = new ArrayList<Contact>(employees);
+        for (EmployeeRecord record : Employees.createRecords("Kharkiv",
+                employees)) {
+            contacts.add(ContactMapper.map(record, null));
+        }
+
+        locale = new Locale(language);
+    }
+
+    @Benchmark
+    public Object sort() {
+        return FullNameCollator.sort(contacts, locale);
+    }
+
+}
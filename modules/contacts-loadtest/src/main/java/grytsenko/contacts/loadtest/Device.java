@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates device, that repeatedly requests contact of user and contacts of
+ * coworkers.
+ * 
+ * <p>
+ * Like application on smartphone, device sends version of coworkers from the
+ * previous response, if requests are conditional.
+ */
+final class Device implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Device.class);
+
+    private final URL myUrl;
+    private final URL coworkersUrl;
+    private final String authorization;
+    private final boolean conditional;
+
+    private final Results myResults;
+    private final Results coworkersResults;
+
+    private final long measureFrom;
+    private final long measureTo;
+
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * Creates device.
+     * 
+     * @param base
+     *            the URL of REST API.
+     * @param username
+     *            the name of user.
+     * @param password
+     *            the password of user.
+     * @param conditional
+     *            <code>true</code> if device sends version of coworkers.
+     * @param myResults
+     *            the results of requests of contact of user.
+     * @param coworkersResults
+     *            the results of requests of contacts of coworkers.
+     * @param measureFrom
+     *            the moment, when requests are started to be measured.
+     * @param measureTo
+     *            the moment, when device stops.
+     */
+    public Device(String base, String username, String password,
+            boolean conditional, Results myResults, Results coworkersResults,
+            long measureFrom, long measureTo) throws IOException {
+        this.myUrl = new URL(base + "/my.json");
+        this.coworkersUrl = new URL(base + "/coworkers.json");
+
+        String credentials = username + ":" + password;
+        this.authorization = "Basic "
+                + DatatypeConverter.printBase64Binary(credentials
+                        .getBytes("UTF-8"));
+        this.conditional = conditional;
+
+        this.myResults = myResults;
+        this.coworkersResults = coworkersResults;
+
+        this.measureFrom = measureFrom;
+        this.measureTo = measureTo;
+    }
+
+    @Override
+    public void run() {
+        String version = null;
+        while (System.nanoTime() < measureTo
+                && !Thread.currentThread().isInterrupted()) {
+            request(myUrl, null, myResults);
+
+            String etag = request(coworkersUrl, conditional ? version : null,
+                    coworkersResults);
+            if (etag != null) {
+                version = etag;
+            }
+        }
+    }
+
+    /**
+     * Performs request and registers its result.
+     * 
+     * @return the value of ETag or <code>null</code> if it is unknown.
+     */
+    private String request(URL url, String version, Results results) {
+        long started = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url
+                    .openConnection();
+            connection.setRequestProperty("Authorization", authorization);
+            connection.setRequestProperty("Accept", "application/json");
+            if (version != null) {
+                connection.setRequestProperty("If-None-Match", version);
+            }
+
+            int status = connection.getResponseCode();
+            boolean successful = status == HttpURLConnection.HTTP_OK
+                    || status == HttpURLConnection.HTTP_NOT_MODIFIED;
+            consume(successful ? connection.getInputStream() : connection
+                    .getErrorStream());
+
+            if (started >= measureFrom) {
+                if (successful) {
+                    results.success(System.nanoTime() - started,
+                            status == HttpURLConnection.HTTP_OK);
+                } else {
+                    results.error();
+                }
+            }
+            return connection.getHeaderField("ETag");
+        } catch (IOException exception) {
+            LOGGER.debug("Request failed.", exception);
+            if (started >= measureFrom) {
+                results.error();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads response, so connection can be reused.
+     */
+    private void consume(InputStream input) throws IOException {
+        if (input == null) {
+            return;
+        }
+
+        try {
+            while (input.read(buffer) != -1) {
+                continue;
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+}
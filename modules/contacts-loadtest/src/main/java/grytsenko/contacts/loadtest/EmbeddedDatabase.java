@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * DB in memory, which is seeded from dump of MySQL.
+ * 
+ * <p>
+ * Only statements, that create and fill tables, are taken from dump.
+ */
+final class EmbeddedDatabase {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(EmbeddedDatabase.class);
+
+    private static final String URL = "jdbc:h2:mem:contacts;DB_CLOSE_DELAY=-1";
+    private static final String USERNAME = "sa";
+    private static final String PASSWORD = "";
+
+    private static final Pattern COMMENTS = Pattern.compile(
+            "/\\*.*?\\*/|^--.*?$", Pattern.DOTALL | Pattern.MULTILINE);
+
+    private static final String[] SUPPORTED = { "DROP TABLE", "CREATE TABLE",
+            "INSERT INTO" };
+
+    private final String sql;
+
+    private Connection connection;
+
+    /**
+     * Creates DB.
+     * 
+     * @param sql
+     *            the path to dump with test data.
+     */
+    public EmbeddedDatabase(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Creates DB and loads data.
+     * 
+     * <p>
+     * DB exists while it is not stopped.
+     * 
+     * @param generatedUids
+     *            the identifiers of generated employees, who also should have
+     *            details.
+     */
+    public void start(List<String> generatedUids) throws IOException,
+            SQLException {
+        connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+
+        List<String> statements = readStatements();
+        Statement statement = connection.createStatement();
+        try {
+            for (String converted : statements) {
+                statement.execute(converted);
+            }
+        } finally {
+            statement.close();
+        }
+
+        PreparedStatement insert = connection
+                .prepareStatement("INSERT INTO employees VALUES (?, ?, ?, 0)");
+        try {
+            for (String uid : generatedUids) {
+                insert.setString(1, uid);
+                insert.setString(2, "Software Engineer");
+                insert.setString(3, uid + ".skype");
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        } finally {
+            insert.close();
+        }
+
+        LOGGER.info("DB is created from {} statements.", statements.size());
+    }
+
+    /**
+     * Drops DB.
+     */
+    public void stop() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("SHUTDOWN");
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Returns the properties for Hibernate to connect to this DB.
+     */
+    public Properties getProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.dialect",
+                "org.hibernate.dialect.H2Dialect");
+        properties.setProperty("hibernate.connection.driver_class",
+                "org.h2.Driver");
+        properties.setProperty("hibernate.connection.url", URL);
+        properties.setProperty("hibernate.connection.username", USERNAME);
+        properties.setProperty("hibernate.connection.password", PASSWORD);
+        return properties;
+    }
+
+    /**
+     * Reads statements from dump and converts them for H2.
+     */
+    private List<String> readStatements() throws IOException {
+        String dump = new String(FileCopyUtils.copyToByteArray(new File(sql)),
+                "UTF-8");
+        dump = COMMENTS.matcher(dump).replaceAll("");
+
+        List<String> statements = new ArrayList<String>();
+        for (String statement : dump.split(";")) {
+            statement = statement.trim().replace("`", "");
+            if (!isSupported(statement)) {
+                continue;
+            }
+
+            if (statement.toUpperCase(Locale.ROOT).startsWith("CREATE TABLE")) {
+                // Options of table are specific for MySQL.
+                statement = statement.substring(0,
+                        statement.lastIndexOf(')') + 1);
+            }
+            statements.add(statement);
+        }
+        return statements;
+    }
+
+    private static boolean isSupported(String statement) {
+        String upperCase = statement.toUpperCase(Locale.ROOT);
+        for (String prefix : SUPPORTED) {
+            if (upperCase.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
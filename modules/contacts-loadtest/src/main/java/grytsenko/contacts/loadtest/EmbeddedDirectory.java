@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldif.LDIFException;
+import com.unboundid.ldif.LDIFReader;
+
+/**
+ * DS in memory, which is seeded from LDIF.
+ * 
+ * <p>
+ * Passwords from LDIF are replaced by the given password, because in-memory
+ * server does not support hashed passwords. Additional employees can be
+ * generated to make locations big enough.
+ */
+final class EmbeddedDirectory {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(EmbeddedDirectory.class);
+
+    private static final String VERSION = "20131006164607Z";
+
+    private final String ldif;
+    private final String password;
+
+    private final List<String> uids = new ArrayList<String>();
+    private final List<String> generatedUids = new ArrayList<String>();
+
+    private InMemoryDirectoryServer server;
+
+    /**
+     * Creates DS.
+     * 
+     * @param ldif
+     *            the path to LDIF with test data.
+     * @param password
+     *            the password for all employees.
+     */
+    public EmbeddedDirectory(String ldif, String password) {
+        this.ldif = ldif;
+        this.password = password;
+    }
+
+    /**
+     * Loads data and starts to listen on some free port.
+     * 
+     * @param employees
+     *            the number of employees to generate.
+     * @param location
+     *            the location of generated employees.
+     * 
+     * @return the port of DS.
+     */
+    public int start(int employees, String location) throws IOException,
+            LDAPException, LDIFException {
+        Properties ldapProperties = PropertiesLoaderUtils
+                .loadAllProperties("ldap.properties");
+        String base = ldapProperties.getProperty("ldap.base");
+        String employeesBase = ldapProperties.getProperty("ldap.employees")
+                + "," + base;
+
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(
+                base);
+        // Test data contains attributes of OpenDJ and its own timestamps.
+        config.setSchema(null);
+        config.setGenerateOperationalAttributes(false);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig(
+                "default", 0));
+
+        server = new InMemoryDirectoryServer(config);
+        loadLdif();
+        generate(employees, location, employeesBase);
+
+        server.startListening();
+        LOGGER.info("DS with {} employees is listening on port {}.",
+                uids.size(), server.getListenPort());
+        return server.getListenPort();
+    }
+
+    /**
+     * Stops DS.
+     */
+    public void stop() {
+        if (server != null) {
+            server.shutDown(true);
+        }
+    }
+
+    /**
+     * Returns the identifiers of all employees.
+     */
+    public List<String> getUids() {
+        return Collections.unmodifiableList(uids);
+    }
+
+    /**
+     * Returns the identifiers of generated employees.
+     */
+    public List<String> getGeneratedUids() {
+        return Collections.unmodifiableList(generatedUids);
+    }
+
+    private void loadLdif() throws IOException, LDAPException, LDIFException {
+        LDIFReader reader = new LDIFReader(ldif);
+        try {
+            Entry entry;
+            while ((entry = reader.readEntry()) != null) {
+                if (entry.hasAttribute("userPassword")) {
+                    entry.setAttribute("userPassword", password);
+                }
+                if (entry.hasAttribute("uid")) {
+                    uids.add(entry.getAttributeValue("uid"));
+                }
+                server.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void generate(int employees, String location,
+            String employeesBase) throws LDAPException {
+        for (int i = 0; i < employees; ++i) {
+            String uid = "employee" + i;
+
+            Entry entry = new Entry("cn=" + uid + "," + employeesBase);
+            entry.addAttribute("objectClass", "top", "person",
+                    "organizationalPerson", "inetOrgPerson");
+            entry.addAttribute("cn", uid);
+            entry.addAttribute("uid", uid);
+            entry.addAttribute("givenName", "Employee");
+            entry.addAttribute("sn", "Employee" + i);
+            entry.addAttribute("mail", uid + "@test.com");
+            entry.addAttribute("mobile", String.valueOf(3801000000L + i));
+            entry.addAttribute("l", location);
+            entry.addAttribute("userPassword", password);
+            entry.addAttribute("modifyTimestamp", VERSION);
+
+            server.add(entry);
+            uids.add(uid);
+            generatedUids.add(uid);
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.loadtest;
+
+import grytsenko.contacts.web.metrics.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts application with DS and DB in memory, then simulates many devices,
+ * that use REST API, and reports throughput and latencies.
+ * 
+ * <p>
+ * Arguments are pairs <code>name=value</code>, see {@link #DEFAULTS} for
+ * names and default values.
+ */
+public final class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LoadTest.class);
+
+    /**
+     * Default values of arguments.
+     */
+    private static final Map<String, String> DEFAULTS = new HashMap<String, String>();
+    static {
+        // Number of simulated devices.
+        DEFAULTS.put("devices", "50");
+        // Duration of warm up and measurement in seconds.
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("duration", "60");
+        // Number of generated employees.
+        DEFAULTS.put("employees", "1000");
+        DEFAULTS.put("location", "Donetsk");
+        // Devices send version of coworkers from the previous response.
+        DEFAULTS.put("conditional", "true");
+        // Password of all employees, see readme of web module.
+        DEFAULTS.put("password", "pass");
+        // Port of web server, 0 means any free port.
+        DEFAULTS.put("port", "0");
+    }
+
+    private static final String CONTEXT_PATH = "/contacts";
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS
+            .toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        EmbeddedDirectory directory = new EmbeddedDirectory(
+                System.getProperty("contacts.ldif"), options.get("password"));
+        EmbeddedDatabase database = new EmbeddedDatabase(
+                System.getProperty("contacts.sql"));
+        Server server = null;
+        try {
+            int ldapPort = directory.start(getInt(options, "employees"),
+                    options.get("location"));
+            database.start(directory.getGeneratedUids());
+
+            configure(ldapPort, database);
+            server = startServer(getInt(options, "port"));
+            int port = server.getConnectors()[0].getLocalPort();
+
+            String base = "http://localhost:" + port + CONTEXT_PATH + "/rest";
+            run(base, directory.getUids(), options);
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+            database.stop();
+            directory.stop();
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String name = separator > 0 ? arg.substring(0, separator) : "";
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown argument: " + arg
+                        + ", expected one of " + DEFAULTS.keySet() + ".");
+            }
+            options.put(name, arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static int getInt(Map<String, String> options, String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    /**
+     * Overrides properties of application, so it uses DS and DB in memory.
+     */
+    private static void configure(int ldapPort, EmbeddedDatabase database)
+            throws IOException {
+        File config = File.createTempFile("contacts", "");
+        if (!config.delete() || !config.mkdir()) {
+            throw new IOException("Could not create " + config + ".");
+        }
+        config.deleteOnExit();
+
+        Properties ldapProperties = new Properties();
+        ldapProperties.setProperty("ldap.url", "ldap://localhost:" + ldapPort);
+        store(ldapProperties, new File(config, "ldap.properties"));
+
+        store(database.getProperties(), new File(config,
+                "database.properties"));
+
+        System.setProperty("contacts.config", config.getAbsolutePath());
+    }
+
+    private static void store(Properties properties, File file)
+            throws IOException {
+        file.deleteOnExit();
+
+        OutputStream output = new FileOutputStream(file);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static Server startServer(int port) throws Exception {
+        Server server = new Server(port);
+
+        WebAppContext context = new WebAppContext(
+                System.getProperty("contacts.webapp"), CONTEXT_PATH);
+        // Classes of application are on class path of load test.
+        context.setParentLoaderPriority(true);
+        context.setThrowUnavailableOnStartupException(true);
+        server.setHandler(context);
+
+        server.start();
+        return server;
+    }
+
+    private static void run(String base, List<String> uids,
+            Map<String, String> options) throws IOException,
+            InterruptedException {
+        int devices = getInt(options, "devices");
+        long warmup = TimeUnit.SECONDS.toNanos(getInt(options, "warmup"));
+        long duration = TimeUnit.SECONDS.toNanos(getInt(options, "duration"));
+        boolean conditional = Boolean.parseBoolean(options.get("conditional"));
+
+        Results my = new Results("my");
+        Results coworkers = new Results("coworkers");
+
+        long measureFrom = System.nanoTime() + warmup;
+        long measureTo = measureFrom + duration;
+
+        // Each device keeps its own connection alive.
+        System.setProperty("http.maxConnections", String.valueOf(devices));
+
+        LOGGER.info("Start {} devices.", devices);
+        ExecutorService executor = Executors.newFixedThreadPool(devices);
+        for (int i = 0; i < devices; ++i) {
+            String username = uids.get(i % uids.size());
+            executor.execute(new Device(base, username, options
+                    .get("password"), conditional, my, coworkers,
+                    measureFrom, measureTo));
+        }
+        executor.shutdown();
+        executor.awaitTermination(warmup + duration
+                + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+        executor.shutdownNow();
+
+        double seconds = (double) duration / TimeUnit.SECONDS.toNanos(1);
+        report(System.out, seconds, my, coworkers);
+    }
+
+    private static void report(PrintStream out, double seconds,
+            Results... results) {
+        out.println(String.format(Locale.ROOT,
+                "%-12s %10s %10s %10s %8s %8s %8s %8s %8s", "resource",
+                "requests", "req/s", "errors", "304", "p50,ms", "p99,ms",
+                "p999,ms", "max,ms"));
+
+        long total = 0;
+        for (Results result : results) {
+            LatencyHistogram latencies = result.getLatencies();
+            long count = latencies.getCount();
+            total += count;
+
+            out.println(String.format(Locale.ROOT,
+                    "%-12s %10d %10.1f %10d %8d %8.2f %8.2f %8.2f %8.2f",
+                    result.getName(), count, count / seconds,
+                    result.getErrors(), result.getNotModified(),
+                    toMillis(latencies.getPercentile(0.5)),
+                    toMillis(latencies.getPercentile(0.99)),
+                    toMillis(latencies.getPercentile(0.999)),
+                    toMillis(latencies.getMax())));
+        }
+
+        out.println(String.format(Locale.ROOT, "%-12s %10d %10.1f", "total",
+                total, total / seconds));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private LoadTest() {
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.loadtest;
+
+import grytsenko.contacts.web.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of requests to single resource.
+ */
+final class Results {
+
+    private final String name;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public Results(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Registers successful request.
+     * 
+     * @param nanos
+     *            the time of request in nanoseconds.
+     * @param modified
+     *            <code>false</code> if server responded with status 304.
+     */
+    public void success(long nanos, boolean modified) {
+        latencies.record(nanos);
+        if (!modified) {
+            notModified.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registers failed request.
+     */
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+}
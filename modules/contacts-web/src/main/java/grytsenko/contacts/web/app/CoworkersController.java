@@ -16,11 +16,9 @@
 package grytsenko.contacts.web.app;
 
 import grytsenko.contacts.api.Contact;
-import grytsenko.contacts.web.service.SearchService;
-import grytsenko.contacts.web.util.FullNameComparator;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.service.LocationService;
 
-import java.security.Principal;
-import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -42,18 +40,16 @@ public class CoworkersController {
             .getLogger(CoworkersController.class);
 
     @Autowired
-    SearchService searchContactsService;
+    LocationService locationService;
 
     /**
      * Finds contacts of coworkers of current user.
      */
     @RequestMapping(method = RequestMethod.GET)
-    public String coworkers(Principal principal, Model model) {
-        String username = principal.getName();
-        LOGGER.debug("Get coworkers of {}.", username);
+    public String coworkers(EmployeeRecord employee, Model model) {
+        LOGGER.debug("Get coworkers of {}.", employee.getUid());
 
-        List<Contact> contacts = searchContactsService.findCoworkers(username);
-        Collections.sort(contacts, new FullNameComparator());
+        List<Contact> contacts = locationService.findCoworkers(employee);
         model.addAttribute("contacts", contacts);
 
         return Views.COWORKERS;
@@ -16,10 +16,9 @@
 package grytsenko.contacts.web.app;
 
 import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeRecord;
 import grytsenko.contacts.web.service.SearchService;
 
-import java.security.Principal;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,11 +44,10 @@ public class HomeController {
      * Finds contact of current user.
      */
     @RequestMapping(method = RequestMethod.GET)
-    public String home(Principal principal, Model model) {
-        String username = principal.getName();
-        LOGGER.debug("Get contact of {}.", username);
+    public String home(EmployeeRecord employee, Model model) {
+        LOGGER.debug("Get contact of {}.", employee.getUid());
 
-        Contact contact = searchContactsService.findEmployee(username);
+        Contact contact = searchContactsService.findEmployee(employee);
         model.addAttribute("contact", contact);
 
         return Views.HOME;
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.app;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.service.IndexService;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Provides handlers for requests for page "Search".
+ */
+@Controller
+@RequestMapping(Views.SEARCH)
+public class SearchController {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(SearchController.class);
+
+    @Autowired
+    IndexService indexService;
+
+    /**
+     * Finds contacts of employees by prefixes of names, mail or position.
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public String search(
+            @RequestParam(value = "q", required = false) String query,
+            Model model) {
+        LOGGER.debug("Search contacts by '{}'.", query);
+
+        List<Contact> contacts = Collections.emptyList();
+        if (query != null) {
+            contacts = indexService.search(query, IndexService.MAX_LIMIT);
+        }
+        model.addAttribute("query", query);
+        model.addAttribute("contacts", contacts);
+
+        return Views.SEARCH;
+    }
+
+}
@@ -43,4 +43,9 @@ public interface Views {
      */
     String COWORKERS = "/coworkers";
 
+    /**
+     * Page with search.
+     */
+    String SEARCH = "/search";
+
 }
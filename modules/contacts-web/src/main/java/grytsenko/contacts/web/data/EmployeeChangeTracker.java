@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks changes of employees in DS and publishes
+ * {@link EmployeeChangedEvent} for each change.
+ * 
+ * <p>
+ * DS is polled for employees modified since the latest known version, so
+ * each poll returns only few entries. Removed employees can not be found by
+ * version, so known employees are periodically compared with snapshot of
+ * {@link EmployeeRecordRepository}. Snapshot is reloaded from DS by
+ * repository, so removed employees are found after its reload. All employees
+ * are loaded from DS only if snapshot is not loaded.
+ * 
+ * <p>
+ * Events are published by single thread of <code>changesExecutor</code> in
+ * order of changes, so listeners do not delay the next poll.
+ */
+@Component
+@ManagedResource(objectName = "contacts:name=employeeChanges",
+        description = "Changes of employees in DS.")
+public class EmployeeChangeTracker implements ApplicationEventPublisherAware {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(EmployeeChangeTracker.class);
+
+    @Autowired
+    EmployeeRecordRepository employeesRepository;
+
+    @Autowired
+    @Qualifier("changesExecutor")
+    TaskExecutor changesExecutor;
+
+    @Value("#{ldapProperties['ldap.changes.enabled']}")
+    boolean enabled;
+    @Value("#{ldapProperties['ldap.changes.reload']}")
+    long reloadPeriod;
+
+    private ApplicationEventPublisher publisher;
+
+    private Map<String, EmployeeRecord> known;
+    private String version;
+    private long reloadedAt;
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Finds changes since the previous poll, if tracking is enabled.
+     * 
+     * <p>
+     * The first poll only remembers all employees, so no events are
+     * published.
+     */
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+
+        polls.incrementAndGet();
+        List<EmployeeChangedEvent> found = new ArrayList<EmployeeChangedEvent>();
+        try {
+            if (known == null || version == null
+                    || System.currentTimeMillis() - reloadedAt > reloadPeriod) {
+                reload(found);
+            } else {
+                LOGGER.debug("Search changes since {}.", version);
+                for (EmployeeRecord record : employeesRepository
+                        .findModifiedSince(version)) {
+                    update(record, found);
+                }
+            }
+        } catch (org.springframework.ldap.NamingException exception) {
+            LOGGER.warn("Could not find changes of employees.", exception);
+        }
+
+        publish(found);
+    }
+
+    /**
+     * Checks that changes of employees are tracked.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of polls of DS.
+     */
+    @ManagedAttribute(description = "Polls of DS.")
+    public long getPolls() {
+        return polls.get();
+    }
+
+    /**
+     * Returns the number of published changes.
+     */
+    @ManagedAttribute(description = "Changes found in DS.")
+    public long getChanges() {
+        return changes.get();
+    }
+
+    private void reload(List<EmployeeChangedEvent> found) {
+        EmployeeRecordSnapshot snapshot = employeesRepository.getSnapshot();
+        Collection<EmployeeRecord> records;
+        if (snapshot != null) {
+            LOGGER.debug("Compare employees with snapshot.");
+            records = snapshot.findAll();
+        } else {
+            LOGGER.debug("Load all employees.");
+            records = employeesRepository.findModifiedSince(null);
+        }
+
+        if (known == null) {
+            known = new HashMap<String, EmployeeRecord>();
+            for (EmployeeRecord record : records) {
+                known.put(record.getUid(), record);
+            }
+            version = Versions.findLatest(records);
+        } else {
+            Set<String> removed = new HashSet<String>(known.keySet());
+            for (EmployeeRecord record : records) {
+                EmployeeRecord previous = known.get(record.getUid());
+                removed.remove(record.getUid());
+
+                // Snapshot can be older than changes found by polls.
+                if (snapshot != null && previous != null
+                        && !Versions.isLater(record.getVersion(),
+                                previous.getVersion())) {
+                    continue;
+                }
+                update(record, found);
+            }
+
+            for (String uid : removed) {
+                EmployeeRecord record = known.remove(uid);
+                found.add(new EmployeeChangedEvent(this, uid, record
+                        .getLocation(), null));
+            }
+        }
+
+        reloadedAt = System.currentTimeMillis();
+        LOGGER.debug("Loaded {} employees.", known.size());
+    }
+
+    /**
+     * Adds event, if record differs from the known one.
+     */
+    private void update(EmployeeRecord record,
+            List<EmployeeChangedEvent> found) {
+        String uid = record.getUid();
+        EmployeeRecord previous = known.put(uid, record);
+
+        if (Versions.isLater(record.getVersion(), version)) {
+            version = record.getVersion();
+        }
+
+        if (previous != null && previous.getVersion() != null
+                && previous.getVersion().equals(record.getVersion())) {
+            return;
+        }
+
+        String oldLocation = previous != null ? previous.getLocation() : null;
+        found.add(new EmployeeChangedEvent(this, uid, oldLocation, record));
+    }
+
+    /**
+     * Publishes events in background, when snapshot of repository is already
+     * updated by all of them at once.
+     */
+    private void publish(final List<EmployeeChangedEvent> found) {
+        if (found.isEmpty()) {
+            return;
+        }
+
+        changes.addAndGet(found.size());
+        employeesRepository.applyChanges(found);
+        changesExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (EmployeeChangedEvent event : found) {
+                    LOGGER.debug("Publish {}.", event);
+                    publisher.publishEvent(event);
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Notifies that employee was added, modified or removed in DS.
+ * 
+ * <p>
+ * Locations allow to invalidate data of both locations, if employee was moved.
+ */
+public class EmployeeChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = -3641094329624837157L;
+
+    private final String uid;
+    private final String oldLocation;
+    private final String newLocation;
+    private final EmployeeRecord record;
+
+    /**
+     * Creates event.
+     * 
+     * @param source
+     *            the component that found change.
+     * @param uid
+     *            the unique identifier of employee.
+     * @param oldLocation
+     *            the location before change or <code>null</code> if employee
+     *            was added.
+     * @param record
+     *            the current record of employee or <code>null</code> if
+     *            employee was removed.
+     */
+    public EmployeeChangedEvent(Object source, String uid, String oldLocation,
+            EmployeeRecord record) {
+        super(source);
+
+        this.uid = uid;
+        this.oldLocation = oldLocation;
+        this.newLocation = record != null ? record.getLocation() : null;
+        this.record = record;
+    }
+
+    /**
+     * Returns the unique identifier of employee.
+     */
+    public String getUid() {
+        return uid;
+    }
+
+    /**
+     * Returns the location before change or <code>null</code> if employee was
+     * added.
+     */
+    public String getOldLocation() {
+        return oldLocation;
+    }
+
+    /**
+     * Returns the location after change or <code>null</code> if employee was
+     * removed.
+     */
+    public String getNewLocation() {
+        return newLocation;
+    }
+
+    /**
+     * Returns the current record of employee or <code>null</code> if employee
+     * was removed.
+     */
+    public EmployeeRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Checks that employee was removed.
+     */
+    public boolean isRemoved() {
+        return record == null;
+    }
+
+    @Override
+    public String toString() {
+        return "EmployeeChangedEvent [uid=" + uid + ", oldLocation="
+                + oldLocation + ", newLocation=" + newLocation + "]";
+    }
+
+}
@@ -17,17 +17,28 @@ package grytsenko.contacts.web.data;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Detailed information about employee from DB.
+ * 
+ * <p>
+ * Details are kept in second-level cache. Cached entry is replaced only by
+ * entry with later version, updates made outside of application are seen
+ * when entry expires.
  */
 @Entity
 @Table(name = "employees")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public final class EmployeeDetails implements Serializable {
 
     private static final long serialVersionUID = 7942426620723987505L;
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes statistics of cache of details and queries to DB.
+ * 
+ * <p>
+ * If cache works, then numbers of queries and loaded entities almost do not
+ * grow, while contacts are synchronized.
+ */
+@Component
+@ManagedResource(objectName = "contacts:name=detailsCache",
+        description = "Cache of details of employees.")
+public class EmployeeDetailsCache implements InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(EmployeeDetailsCache.class);
+
+    private static final String REGION = EmployeeDetails.class.getName();
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private SessionFactory sessionFactory;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (!(entityManagerFactory instanceof HibernateEntityManagerFactory)) {
+            throw new IllegalArgumentException("Hibernate not used.");
+        }
+
+        sessionFactory = ((HibernateEntityManagerFactory) entityManagerFactory)
+                .getSessionFactory();
+    }
+
+    /**
+     * Returns the number of details found in cache.
+     */
+    @ManagedAttribute(description = "Details found in cache.")
+    public long getHits() {
+        SecondLevelCacheStatistics region = getRegionStatistics();
+        return region != null ? region.getHitCount() : 0;
+    }
+
+    /**
+     * Returns the number of details not found in cache.
+     */
+    @ManagedAttribute(description = "Details not found in cache.")
+    public long getMisses() {
+        SecondLevelCacheStatistics region = getRegionStatistics();
+        return region != null ? region.getMissCount() : 0;
+    }
+
+    /**
+     * Returns the number of details in memory.
+     */
+    @ManagedAttribute(description = "Details in memory.")
+    public long getSize() {
+        SecondLevelCacheStatistics region = getRegionStatistics();
+        return region != null ? region.getElementCountInMemory() : 0;
+    }
+
+    /**
+     * Returns the number of results of queries found in cache.
+     */
+    @ManagedAttribute(description = "Results of queries found in cache.")
+    public long getQueryHits() {
+        return getStatistics().getQueryCacheHitCount();
+    }
+
+    /**
+     * Returns the number of results of queries not found in cache.
+     */
+    @ManagedAttribute(description = "Results of queries not found in cache.")
+    public long getQueryMisses() {
+        return getStatistics().getQueryCacheMissCount();
+    }
+
+    /**
+     * Returns the number of queries sent to DB.
+     */
+    @ManagedAttribute(description = "Queries sent to DB.")
+    public long getQueries() {
+        return getStatistics().getQueryExecutionCount();
+    }
+
+    /**
+     * Returns the number of entities loaded from DB.
+     */
+    @ManagedAttribute(description = "Entities loaded from DB.")
+    public long getLoads() {
+        return getStatistics().getEntityLoadCount();
+    }
+
+    /**
+     * Forgets all details and results of queries.
+     */
+    @ManagedOperation(description = "Forgets all details and results of queries.")
+    public void clear() {
+        LOGGER.debug("Forget all cached details.");
+        sessionFactory.getCache().evictEntityRegions();
+        sessionFactory.getCache().evictQueryRegions();
+        sessionFactory.getCache().evictDefaultQueryRegion();
+    }
+
+    /**
+     * Resets all numbers.
+     */
+    @ManagedOperation(description = "Resets statistics.")
+    public void resetStatistics() {
+        getStatistics().clear();
+    }
+
+    private Statistics getStatistics() {
+        return sessionFactory.getStatistics();
+    }
+
+    private SecondLevelCacheStatistics getRegionStatistics() {
+        return getStatistics().getSecondLevelCacheStatistics(REGION);
+    }
+
+}
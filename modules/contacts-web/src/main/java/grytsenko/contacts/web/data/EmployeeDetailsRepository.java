@@ -15,11 +15,42 @@
  */
 package grytsenko.contacts.web.data;
 
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 /**
  * Repository for the detailed information about employees.
  */
 public interface EmployeeDetailsRepository extends
         JpaRepository<EmployeeDetails, String> {
+
+    /**
+     * Finds detailed information about several employees at once.
+     * 
+     * <p>
+     * Results are kept in query cache, so the same set of employees is found
+     * without request to DB until table is changed.
+     * 
+     * @param uids
+     *            the unique identifiers of employees.
+     * 
+     * @return the found details, employees without details are skipped.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<EmployeeDetails> findByUidIn(Collection<String> uids);
+
+    /**
+     * Finds identifiers of all employees, that have details.
+     * 
+     * @return the found identifiers.
+     */
+    @Query("select details.uid from EmployeeDetails details")
+    List<String> findAllUids();
+
 }
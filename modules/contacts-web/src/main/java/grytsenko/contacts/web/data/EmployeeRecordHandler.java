@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.List;
+
+/**
+ * Handles records of employees as soon as they are found.
+ */
+public interface EmployeeRecordHandler {
+
+    /**
+     * Handles the next part of found records.
+     * 
+     * @param records
+     *            the found records, list must not be kept after call.
+     */
+    void handle(List<EmployeeRecord> records);
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.util.StringUtils;
+
+/**
+ * Creates employee from attributes.
+ */
+final class EmployeeRecordMapper implements AttributesMapper {
+
+    private final String uidAttrId;
+    private final String firstnameAttrId;
+    private final String lastnameAttrId;
+    private final String photoUrlAttrId;
+    private final String mailAttrId;
+    private final String phoneAttrId;
+    private final String locationAttrId;
+    private final String versionAttrId;
+
+    /**
+     * Creates mapper for the given identifiers of attributes.
+     */
+    public EmployeeRecordMapper(String uidAttrId, String firstnameAttrId,
+            String lastnameAttrId, String photoUrlAttrId, String mailAttrId,
+            String phoneAttrId, String locationAttrId, String versionAttrId) {
+        this.uidAttrId = uidAttrId;
+        this.firstnameAttrId = firstnameAttrId;
+        this.lastnameAttrId = lastnameAttrId;
+        this.photoUrlAttrId = photoUrlAttrId;
+        this.mailAttrId = mailAttrId;
+        this.phoneAttrId = phoneAttrId;
+        this.locationAttrId = locationAttrId;
+        this.versionAttrId = versionAttrId;
+    }
+
+    /**
+     * Returns the identifiers of attributes, that should be requested from DS.
+     */
+    public String[] getAttributeIds() {
+        return new String[] { uidAttrId, firstnameAttrId, lastnameAttrId,
+                photoUrlAttrId, mailAttrId, phoneAttrId, locationAttrId,
+                versionAttrId };
+    }
+
+    /**
+     * Returns the identifiers of attributes, that are required for properties
+     * of projection. Identifier of employee is always required.
+     */
+    public String[] getAttributeIds(Projection projection) {
+        String[] fields = { Projection.FIRST_NAME, Projection.LAST_NAME,
+                Projection.PHOTO_URL, Projection.MAIL, Projection.PHONE,
+                Projection.LOCATION, Projection.VERSION };
+        String[] attrIds = { firstnameAttrId, lastnameAttrId, photoUrlAttrId,
+                mailAttrId, phoneAttrId, locationAttrId, versionAttrId };
+
+        List<String> required = new ArrayList<String>();
+        required.add(uidAttrId);
+        for (int i = 0; i < fields.length; ++i) {
+            if (projection.includes(fields[i])) {
+                required.add(attrIds[i]);
+            }
+        }
+        return required.toArray(new String[required.size()]);
+    }
+
+    @Override
+    public EmployeeRecord mapFromAttributes(Attributes attrs)
+            throws NamingException {
+        EmployeeRecord employee = new EmployeeRecord();
+
+        employee.setUid(asString(uidAttrId, attrs));
+
+        employee.setFirstName(asString(firstnameAttrId, attrs));
+        employee.setLastName(asString(lastnameAttrId, attrs));
+
+        employee.setPhotoUrl(asString(photoUrlAttrId, attrs));
+
+        employee.setMail(asString(mailAttrId, attrs));
+        employee.setPhone(asPhone(phoneAttrId, attrs));
+
+        employee.setLocation(asString(locationAttrId, attrs));
+
+        employee.setVersion(asDigits(versionAttrId, attrs));
+
+        return employee;
+    }
+
+    /**
+     * Returns string value of attribute.
+     * 
+     * <p>
+     * If attribute is not found, then returns <code>null</code>.
+     */
+    private static String asString(String attrId, Attributes attrs)
+            throws NamingException {
+        Attribute attr = attrs.get(attrId);
+        if (attr == null) {
+            return null;
+        }
+
+        return (String) attr.get();
+    }
+
+    /**
+     * Considers that attribute is the set of digits.
+     */
+    private static String asDigits(String attrId, Attributes attrs)
+            throws NamingException {
+        String value = asString(attrId, attrs);
+        if (!StringUtils.hasLength(value)) {
+            return null;
+        }
+
+        return value.replaceAll("\\D+", "");
+    }
+
+    /**
+     * Considers that attribute contains phone number.
+     */
+    private static String asPhone(String attrId, Attributes attrs)
+            throws NamingException {
+        String digits = asDigits(attrId, attrs);
+        if (!StringUtils.hasLength(digits)) {
+            return null;
+        }
+
+        return '+' + digits;
+    }
+
+}
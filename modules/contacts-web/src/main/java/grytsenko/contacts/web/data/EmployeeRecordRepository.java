@@ -16,35 +16,94 @@
 package grytsenko.contacts.web.data;
 
 import static java.text.MessageFormat.format;
-
+import grytsenko.contacts.web.metrics.LatencyHistogram;
+import grytsenko.contacts.web.metrics.Metrics;
+import grytsenko.contacts.web.util.SingleFlight;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
-import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.ldap.core.ContextExecutor;
+import org.springframework.ldap.core.LdapEncoder;
 import org.springframework.ldap.core.LdapTemplate;
-import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.support.LdapUtils;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
 
 /**
  * Repository for the information about employees.
+ * 
+ * <p>
+ * Employees are requested from DS by pages (RFC 2696), so big results do not
+ * exceed size limit of server.
+ * 
+ * <p>
+ * If employees are passed to handler, then search is performed by separate
+ * thread, which puts pages to queue, while handler takes them in the thread
+ * of caller. So connection to DS is not held while handler waits for details
+ * or for slow client. If all threads for searches are busy, then search is
+ * performed by the thread of caller.
+ * 
+ * <p>
+ * Concurrent searches for the same employee or for the list of employees from
+ * the same location share single request to DS. Searches, that pass
+ * employees to handler, are not shared, so slow handler of one caller does
+ * not delay other callers.
+ * 
+ * <p>
+ * If snapshot is enabled, then changes found by {@link EmployeeChangeTracker}
+ * are applied to snapshot as soon as they are found.
  */
 @Repository
+@ManagedResource(objectName = "contacts:name=employeeRecords",
+        description = "Records of employees from DS.")
 public class EmployeeRecordRepository {
 
     private static final Logger LOGGER = LoggerFactory
             .getLogger(EmployeeRecordRepository.class);
 
+    private static final LatencyHistogram SEARCH_TIMER = Metrics
+            .timer("ldap_search_seconds");
+
+    /**
+     * The maximum number of identifiers in single filter.
+     */
+    private static final int UIDS_CHUNK_SIZE = 100;
+
     @Autowired
-    LdapContextSource ldapContextSource;
+    LdapTemplate ldapTemplate;
+
+    @Autowired
+    @Qualifier("searchExecutor")
+    AsyncTaskExecutor searchExecutor;
 
     @Value("#{ldapProperties['ldap.employees']}")
     String employeesBase;
@@ -53,6 +112,10 @@ public class EmployeeRecordRepository {
     String filterByUidTemplate;
     @Value("#{ldapProperties['ldap.employees.filter.location']}")
     String filterByLocationTemplate;
+    @Value("#{ldapProperties['ldap.employees.filter.all']}")
+    String filterAll;
+    @Value("#{ldapProperties['ldap.employees.filter.modified']}")
+    String filterByModifiedTemplate;
 
     @Value("#{ldapProperties['ldap.employee.uid']}")
     String uidAttrId;
@@ -71,21 +134,106 @@ public class EmployeeRecordRepository {
     @Value("#{ldapProperties['ldap.employee.version']}")
     String versionAttrId;
 
+    @Value("#{ldapProperties['ldap.page.size']}")
+    int pageSize;
+    @Value("#{ldapProperties['ldap.page.queue']}")
+    int pageQueueSize;
+    @Value("#{ldapProperties['ldap.page.wait']}")
+    long pageWait;
+
+    @Value("#{ldapProperties['ldap.snapshot.enabled']}")
+    boolean snapshotEnabled;
+    @Value("#{ldapProperties['ldap.snapshot.reload']}")
+    long snapshotReloadPeriod;
+
+    private volatile EmployeeRecordSnapshot snapshot;
+
+    private final SingleFlight<String, EmployeeRecord> uidFlights = new SingleFlight<String, EmployeeRecord>();
+    private final SingleFlight<String, List<EmployeeRecord>> locationFlights = new SingleFlight<String, List<EmployeeRecord>>();
+
     /**
      * Finds employee.
      * 
+     * <p>
+     * Identifier is escaped, so it can be received from clients.
+     * 
      * @param uid
-     *            the unique identifier of employee..
+     *            the unique identifier of employee.
      * 
      * @return the found employee or <code>null</code> if employee not found.
      */
     public EmployeeRecord findByUid(String uid) {
         LOGGER.debug("Search employee by uid: {}.", uid);
 
-        String filter = format(filterByUidTemplate, uid);
-        List<EmployeeRecord> contacts = findByFilter(filter);
+        EmployeeRecordSnapshot current = snapshot;
+        if (current != null) {
+            return current.findByUid(uid);
+        }
+
+        final String filter = format(filterByUidTemplate,
+                LdapEncoder.filterEncode(uid));
+        return uidFlights.execute(uid, new Callable<EmployeeRecord>() {
+            @Override
+            public EmployeeRecord call() {
+                List<EmployeeRecord> employees = findByFilter(filter);
+                return employees.isEmpty() ? null : employees.get(0);
+            }
+        });
+    }
+
+    /**
+     * Finds several employees and passes them to handler by pages, as soon as
+     * they are found.
+     * 
+     * <p>
+     * Identifiers are split into chunks, each chunk is searched by single
+     * filter. Identifiers are escaped, so they can be received from clients.
+     * 
+     * @param uids
+     *            the unique identifiers of employees.
+     * @param handler
+     *            the handler for found employees, employees that were not
+     *            found are skipped.
+     */
+    public void findByUids(Collection<String> uids,
+            EmployeeRecordHandler handler) {
+        LOGGER.debug("Search {} employees by uids.", uids.size());
+
+        EmployeeRecordSnapshot current = snapshot;
+        if (current != null) {
+            List<EmployeeRecord> employees = new ArrayList<EmployeeRecord>();
+            for (String uid : uids) {
+                EmployeeRecord employee = current.findByUid(uid);
+                if (employee != null) {
+                    employees.add(employee);
+                }
+            }
+            handleByPages(employees, handler);
+            return;
+        }
+
+        List<String> allUids = new ArrayList<String>(uids);
+        for (int from = 0; from < allUids.size(); from += UIDS_CHUNK_SIZE) {
+            int to = Math.min(from + UIDS_CHUNK_SIZE, allUids.size());
+            findByFilter(createFilterByUids(allUids.subList(from, to)),
+                    handler);
+        }
+    }
 
-        return contacts.isEmpty() ? null : contacts.get(0);
+    /**
+     * Finds all employees.
+     * 
+     * @return the found employees.
+     */
+    public Collection<EmployeeRecord> findAll() {
+        LOGGER.debug("Search all employees.");
+
+        EmployeeRecordSnapshot current = snapshot;
+        if (current != null) {
+            return current.findAll();
+        }
+
+        return findByFilter(filterAll);
     }
 
     /**
@@ -94,101 +242,499 @@ public class EmployeeRecordRepository {
      * @param location
      *            the name of location.
      * 
-     * @return the list of found employees.
+     * @return the unmodifiable list of found employees.
      */
     public List<EmployeeRecord> findByLocation(String location) {
         LOGGER.debug("Search employees by location: {}.", location);
 
-        String filter = format(filterByLocationTemplate, location);
+        EmployeeRecordSnapshot current = snapshot;
+        if (current != null) {
+            return current.findByLocation(location);
+        }
+
+        final String filter = format(filterByLocationTemplate, location);
+        return locationFlights.execute(location,
+                new Callable<List<EmployeeRecord>>() {
+                    @Override
+                    public List<EmployeeRecord> call() {
+                        return Collections
+                                .unmodifiableList(findByFilter(filter));
+                    }
+                });
+    }
+
+    /**
+     * Finds all employees from specified location and passes them to handler
+     * by pages, as soon as they are found.
+     * 
+     * @param location
+     *            the name of location.
+     * @param handler
+     *            the handler for found employees.
+     */
+    public void findByLocation(String location, EmployeeRecordHandler handler) {
+        LOGGER.debug("Search employees by location: {}.", location);
+
+        EmployeeRecordSnapshot current = snapshot;
+        if (current != null) {
+            handleByPages(current.findByLocation(location), handler);
+            return;
+        }
+
+        findByFilter(format(filterByLocationTemplate, location), handler);
+    }
+
+    /**
+     * Finds employees from specified location and passes them to handler by
+     * pages, but receives from DS only attributes for properties of
+     * projection.
+     * 
+     * <p>
+     * Such searches are not shared with other searches. If snapshot is
+     * loaded, then full records are passed to handler.
+     * 
+     * @param location
+     *            the name of location.
+     * @param projection
+     *            the required properties of contacts.
+     * @param handler
+     *            the handler for found employees.
+     */
+    public void findByLocation(String location, Projection projection,
+            EmployeeRecordHandler handler) {
+        if (projection.isAll()) {
+            findByLocation(location, handler);
+            return;
+        }
+
+        LOGGER.debug("Search employees by location: {}, attributes: {}.",
+                location, projection.getFields());
+
+        EmployeeRecordSnapshot current = snapshot;
+        if (current != null) {
+            handleByPages(current.findByLocation(location), handler);
+            return;
+        }
+
+        findByFilter(format(filterByLocationTemplate, location), projection,
+                handler);
+    }
+
+    /**
+     * Finds employees modified since the given version.
+     * 
+     * <p>
+     * Employees are always searched in DS, even if snapshot is enabled.
+     * 
+     * @param version
+     *            the known version or <code>null</code> to find all employees.
+     * 
+     * @return the found employees, including employees of the given version.
+     */
+    public List<EmployeeRecord> findModifiedSince(String version) {
+        LOGGER.debug("Search employees modified since {}.", version);
+
+        String filter = version != null ? format(filterByModifiedTemplate,
+                version) : filterAll;
         return findByFilter(filter);
     }
 
-    private List<EmployeeRecord> findByFilter(String filter) {
-        LOGGER.debug("Search emplyees by filter: {}.", filter);
+    /**
+     * Returns snapshot of employees or <code>null</code>, if snapshot is not
+     * loaded.
+     */
+    EmployeeRecordSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        LdapTemplate template = new LdapTemplate(ldapContextSource);
+    /**
+     * Applies changes of employees to snapshot, if snapshot is loaded.
+     * 
+     * <p>
+     * So snapshot is updated before its next refresh. All changes are applied
+     * by single update of snapshot.
+     */
+    public synchronized void applyChanges(
+            Collection<EmployeeChangedEvent> events) {
+        EmployeeRecordSnapshot current = snapshot;
+        if (current == null || events.isEmpty()) {
+            return;
+        }
 
-        String[] attrs = new String[] { uidAttrId, firstnameAttrId,
-                lastnameAttrId, photoUrlAttrId, mailAttrId, phoneAttrId,
-                locationAttrId, versionAttrId };
+        List<EmployeeRecord> changed = new ArrayList<EmployeeRecord>();
+        List<String> removed = new ArrayList<String>();
+        for (EmployeeChangedEvent event : events) {
+            if (event.isRemoved()) {
+                removed.add(event.getUid());
+            } else {
+                changed.add(event.getRecord());
+            }
+        }
+        snapshot = current.update(changed, removed);
+    }
 
-        @SuppressWarnings("unchecked")
-        List<EmployeeRecord> employees = template.search(employeesBase, filter,
-                SearchControls.ONELEVEL_SCOPE, attrs,
-                new EmployeeRecordMapper());
+    /**
+     * Returns the identifiers of attributes of employee, that are requested
+     * from DS.
+     */
+    public String[] getAttributeIds() {
+        return createMapper().getAttributeIds();
+    }
 
-        LOGGER.debug("Found {} employees.", employees.size());
+    /**
+     * Creates employee from attributes, that were received from DS elsewhere.
+     */
+    public EmployeeRecord mapFromAttributes(Attributes attributes) {
+        try {
+            return createMapper().mapFromAttributes(attributes);
+        } catch (NamingException exception) {
+            throw LdapUtils.convertLdapException(exception);
+        }
+    }
+
+    /**
+     * Returns the number of searches by identifier, that were sent to DS.
+     */
+    @ManagedAttribute(description = "Searches by UID sent to DS.")
+    public long getUidCalls() {
+        return uidFlights.getCalls();
+    }
+
+    /**
+     * Returns the number of searches by identifier, that used result of
+     * concurrent search.
+     */
+    @ManagedAttribute(description = "Searches by UID collapsed.")
+    public long getUidCollapsed() {
+        return uidFlights.getCollapsed();
+    }
+
+    /**
+     * Returns the number of searches by location, that were sent to DS.
+     */
+    @ManagedAttribute(description = "Searches by location sent to DS.")
+    public long getLocationCalls() {
+        return locationFlights.getCalls();
+    }
+
+    /**
+     * Returns the number of searches by location, that used result of
+     * concurrent search.
+     */
+    @ManagedAttribute(description = "Searches by location collapsed.")
+    public long getLocationCollapsed() {
+        return locationFlights.getCollapsed();
+    }
+
+    /**
+     * Refreshes the in-memory snapshot of employees, if snapshot is enabled.
+     * 
+     * <p>
+     * The first call loads all employees. Subsequent calls load only employees
+     * modified since the latest known version. Removed employees are dropped
+     * when snapshot is fully reloaded after the configured period.
+     * 
+     * <p>
+     * Until snapshot is loaded, all searches are performed in DS.
+     */
+    public synchronized void refreshSnapshot() {
+        if (!snapshotEnabled) {
+            return;
+        }
+
+        EmployeeRecordSnapshot current = snapshot;
+        try {
+            if (current == null || current.getVersion() == null
+                    || current.isOlderThan(snapshotReloadPeriod)) {
+                LOGGER.debug("Load snapshot of employees.");
+                snapshot = EmployeeRecordSnapshot
+                        .create(findByFilter(filterAll));
+                LOGGER.debug("Loaded {} employees.", snapshot.size());
+                return;
+            }
+
+            LOGGER.debug("Update snapshot since {}.", current.getVersion());
+            String filter = format(filterByModifiedTemplate,
+                    current.getVersion());
+            List<EmployeeRecord> changed = findByFilter(filter);
+            EmployeeRecordSnapshot updated = current.update(changed,
+                    Collections.<String> emptyList());
+            if (updated != current) {
+                LOGGER.debug("Updated snapshot with changed employees.");
+                snapshot = updated;
+            }
+        } catch (org.springframework.ldap.NamingException exception) {
+            LOGGER.warn("Could not refresh snapshot of employees.", exception);
+        }
+    }
+
+    private void handleByPages(List<EmployeeRecord> employees,
+            EmployeeRecordHandler handler) {
+        for (int from = 0; from < employees.size(); from += pageSize) {
+            int to = Math.min(from + pageSize, employees.size());
+            handler.handle(employees.subList(from, to));
+        }
+    }
+
+    private String createFilterByUids(List<String> uids) {
+        StringBuilder filter = new StringBuilder("(|");
+        for (String uid : uids) {
+            filter.append(format(filterByUidTemplate,
+                    LdapEncoder.filterEncode(uid)));
+        }
+        return filter.append(')').toString();
+    }
+
+    private List<EmployeeRecord> findByFilter(String filter) {
+        final List<EmployeeRecord> employees = new ArrayList<EmployeeRecord>();
+        search(filter, Projection.ALL, new EmployeeRecordHandler() {
+            @Override
+            public void handle(List<EmployeeRecord> records) {
+                employees.addAll(records);
+            }
+        });
 
         return employees;
     }
 
+    private void findByFilter(String filter, EmployeeRecordHandler handler) {
+        findByFilter(filter, Projection.ALL, handler);
+    }
+
     /**
-     * Creates employee from attributes.
+     * Performs search by separate thread and passes pages of results to
+     * handler in the current thread.
+     * 
+     * <p>
+     * If handler fails, then search is cancelled. If search fails, then its
+     * exception is rethrown after pages, that were found before failure, are
+     * handled. If search can not be started, then it is performed by the
+     * current thread.
      */
-    private class EmployeeRecordMapper implements AttributesMapper {
+    private void findByFilter(final String filter,
+            final Projection projection, EmployeeRecordHandler handler) {
+        final PageQueue pages = new PageQueue(pageQueueSize, pageWait);
+        Future<?> search;
+        try {
+            search = searchExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        search(filter, projection, pages);
+                        pages.close();
+                    } catch (RuntimeException exception) {
+                        pages.fail(exception);
+                    } catch (Error error) {
+                        pages.fail(new IllegalStateException(
+                                "Could not search employees.", error));
+                        throw error;
+                    }
+                }
+            });
+        } catch (TaskRejectedException exception) {
+            LOGGER.debug("All threads for searches are busy.");
+            search(filter, projection, handler);
+            return;
+        }
 
-        @Override
-        public EmployeeRecord mapFromAttributes(Attributes attrs)
-                throws NamingException {
-            EmployeeRecord employee = new EmployeeRecord();
+        try {
+            pages.drainTo(handler);
+        } finally {
+            search.cancel(true);
+        }
+    }
 
-            employee.setUid(asString(uidAttrId, attrs));
+    private void search(final String filter, Projection projection,
+            final EmployeeRecordHandler handler) {
+        LOGGER.debug("Search emplyees by filter: {}.", filter);
 
-            employee.setFirstName(asString(firstnameAttrId, attrs));
-            employee.setLastName(asString(lastnameAttrId, attrs));
+        final SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
+        controls.setReturningAttributes(createMapper().getAttributeIds(
+                projection));
+
+        Integer count = (Integer) ldapTemplate
+                .executeReadOnly(new ContextExecutor() {
+                    @Override
+                    public Object executeWithContext(DirContext ctx)
+                            throws NamingException {
+                        return searchByPages((LdapContext) ctx, filter,
+                                controls, handler);
+                    }
+                });
+
+        LOGGER.debug("Found {} employees.", count);
+    }
 
-            employee.setPhotoUrl(asString(photoUrlAttrId, attrs));
+    /**
+     * Performs search and passes each page of results to handler.
+     * 
+     * <p>
+     * If server does not support paged results, then all results are passed
+     * as single page.
+     * 
+     * <p>
+     * Time spent by handler is excluded from time of search.
+     * 
+     * @return the number of found employees.
+     */
+    private int searchByPages(LdapContext ctx, String filter,
+            SearchControls controls, EmployeeRecordHandler handler)
+            throws NamingException {
+        EmployeeRecordMapper mapper = createMapper();
+
+        long started = System.nanoTime();
+        long handling = 0;
+
+        int count = 0;
+        byte[] cookie = null;
+        try {
+            do {
+                ctx.setRequestControls(new Control[] { createPageControl(cookie) });
+
+                List<EmployeeRecord> page = new ArrayList<EmployeeRecord>(
+                        pageSize);
+                NamingEnumeration<SearchResult> results = ctx.search(
+                        employeesBase, filter, controls);
+                try {
+                    while (results.hasMore()) {
+                        SearchResult result = results.next();
+                        page.add(mapper.mapFromAttributes(result
+                                .getAttributes()));
+                    }
+                } finally {
+                    results.close();
+                }
+
+                if (!page.isEmpty()) {
+                    count += page.size();
+
+                    long handled = System.nanoTime();
+                    handler.handle(page);
+                    handling += System.nanoTime() - handled;
+                }
+
+                cookie = getCookie(ctx.getResponseControls());
+            } while (cookie != null && cookie.length > 0);
+        } finally {
+            ctx.setRequestControls(null);
+            SEARCH_TIMER.record(System.nanoTime() - started - handling);
+        }
 
-            employee.setMail(asString(mailAttrId, attrs));
-            employee.setPhone(asPhone(phoneAttrId, attrs));
+        return count;
+    }
 
-            employee.setLocation(asString(locationAttrId, attrs));
+    private EmployeeRecordMapper createMapper() {
+        return new EmployeeRecordMapper(uidAttrId, firstnameAttrId,
+                lastnameAttrId, photoUrlAttrId, mailAttrId, phoneAttrId,
+                locationAttrId, versionAttrId);
+    }
 
-            employee.setVersion(asDigits(versionAttrId, attrs));
+    private Control createPageControl(byte[] cookie) throws NamingException {
+        try {
+            return new PagedResultsControl(pageSize, cookie,
+                    Control.NONCRITICAL);
+        } catch (IOException exception) {
+            NamingException namingException = new NamingException(
+                    "Could not create control for paged results.");
+            namingException.setRootCause(exception);
+            throw namingException;
+        }
+    }
 
-            return employee;
+    private static byte[] getCookie(Control[] controls) {
+        if (controls == null) {
+            return null;
         }
 
-        /**
-         * Returns string value of attribute.
-         * 
-         * <p>
-         * If attribute is not found, then returns empty string.
-         */
-        private String asString(String attrId, Attributes attrs)
-                throws NamingException {
-            Attribute attr = attrs.get(attrId);
-            if (attr == null) {
-                return null;
+        for (Control control : controls) {
+            if (control instanceof PagedResultsResponseControl) {
+                return ((PagedResultsResponseControl) control).getCookie();
             }
-
-            return (String) attr.get();
         }
+        return null;
+    }
+
+    /**
+     * Queue of pages between search and handler.
+     * 
+     * <p>
+     * Search waits for free place in queue no longer than the given time.
+     * After that queue is not bounded any more, so search is completed and
+     * connection to DS is released, even if caller does not take pages, and
+     * caller still receives all pages. Caller waits for each page no longer
+     * than the same time.
+     */
+    private static final class PageQueue implements EmployeeRecordHandler {
 
         /**
-         * Considers that attribute is the set of digits.
+         * Marks the end of results, compared by identity.
          */
-        private String asDigits(String attrId, Attributes attrs)
-                throws NamingException {
-            String value = asString(attrId, attrs);
-            if (!StringUtils.hasLength(value)) {
-                return null;
+        private static final List<EmployeeRecord> END = new ArrayList<EmployeeRecord>();
+
+        private final BlockingQueue<List<EmployeeRecord>> pages = new LinkedBlockingQueue<List<EmployeeRecord>>();
+        private final Semaphore free;
+        private final long wait;
+
+        private volatile RuntimeException failure;
+        private boolean overflow;
+
+        PageQueue(int size, long wait) {
+            this.free = new Semaphore(size);
+            this.wait = wait;
+        }
+
+        @Override
+        public void handle(List<EmployeeRecord> page) {
+            try {
+                if (!overflow
+                        && !free.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                    LOGGER.debug("Pages of employees not taken in time.");
+                    overflow = true;
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search interrupted.",
+                        exception);
             }
+            pages.add(page);
+        }
 
-            return value.replaceAll("\\D+", "");
+        public void close() {
+            pages.add(END);
         }
 
-        /**
-         * Considers that attribute contains phone number.
-         */
-        private String asPhone(String attrId, Attributes attrs)
-                throws NamingException {
-            String digits = asDigits(attrId, attrs);
-            if (!StringUtils.hasLength(digits)) {
-                return null;
+        public void fail(RuntimeException exception) {
+            failure = exception;
+            pages.add(END);
+        }
+
+        public void drainTo(EmployeeRecordHandler handler) {
+            try {
+                List<EmployeeRecord> page = takePage();
+                while (page != END) {
+                    free.release();
+                    handler.handle(page);
+                    page = takePage();
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search interrupted.",
+                        exception);
             }
 
-            return '+' + digits;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private List<EmployeeRecord> takePage() throws InterruptedException {
+            List<EmployeeRecord> page = pages.poll(wait, TimeUnit.MILLISECONDS);
+            if (page == null) {
+                throw new IllegalStateException(
+                        "Pages of employees not found in time.");
+            }
+            return page;
         }
 
     }
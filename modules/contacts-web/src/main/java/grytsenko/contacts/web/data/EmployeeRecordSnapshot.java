@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable in-memory copy of records for all employees.
+ *
+ * <p>
+ * Records in snapshot are shared between callers, so they must not be
+ * modified. Updated snapshot shares groups of unchanged locations with the
+ * previous one.
+ */
+final class EmployeeRecordSnapshot {
+
+    private final Map<String, EmployeeRecord> byUid;
+    private final Map<String, List<EmployeeRecord>> byLocation;
+
+    private final String version;
+    private final long createdAt;
+
+    /**
+     * Creates snapshot from the full list of records.
+     */
+    public static EmployeeRecordSnapshot create(
+            Collection<EmployeeRecord> records) {
+        Map<String, EmployeeRecord> byUid = new HashMap<String, EmployeeRecord>();
+        for (EmployeeRecord record : records) {
+            byUid.put(record.getUid(), record);
+        }
+
+        return new EmployeeRecordSnapshot(byUid, groupByLocation(byUid
+                .values()), Versions.findLatest(byUid.values()),
+                System.currentTimeMillis());
+    }
+
+    private EmployeeRecordSnapshot(Map<String, EmployeeRecord> byUid,
+            Map<String, List<EmployeeRecord>> byLocation, String version,
+            long createdAt) {
+        this.byUid = byUid;
+        this.byLocation = byLocation;
+        this.version = version;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Creates new snapshot, where the changed records replace existing ones
+     * and the removed records are dropped.
+     *
+     * <p>
+     * Records of the same version as existing ones are skipped, if nothing is
+     * changed, then this snapshot is returned. Only groups of locations of
+     * changed records are built again.
+     *
+     * @param changed
+     *            the records that were added or modified.
+     * @param removed
+     *            the unique identifiers of removed employees.
+     *
+     * @return the updated snapshot.
+     */
+    public EmployeeRecordSnapshot update(Collection<EmployeeRecord> changed,
+            Collection<String> removed) {
+        Map<String, EmployeeRecord> updated = null;
+        Set<String> locations = new HashSet<String>();
+        Set<String> uids = new HashSet<String>();
+        String latest = version;
+
+        for (EmployeeRecord record : changed) {
+            String uid = record.getUid();
+            EmployeeRecord existing = updated != null ? updated.get(uid)
+                    : byUid.get(uid);
+            if (existing != null && existing.getVersion() != null
+                    && existing.getVersion().equals(record.getVersion())) {
+                continue;
+            }
+
+            if (updated == null) {
+                updated = new HashMap<String, EmployeeRecord>(byUid);
+            }
+            updated.put(uid, record);
+            uids.add(uid);
+            if (existing != null) {
+                locations.add(existing.getLocation());
+            }
+            locations.add(record.getLocation());
+            if (Versions.isLater(record.getVersion(), latest)) {
+                latest = record.getVersion();
+            }
+        }
+
+        for (String uid : removed) {
+            EmployeeRecord existing = updated != null ? updated.get(uid)
+                    : byUid.get(uid);
+            if (existing == null) {
+                continue;
+            }
+
+            if (updated == null) {
+                updated = new HashMap<String, EmployeeRecord>(byUid);
+            }
+            updated.remove(uid);
+            uids.add(uid);
+            locations.add(existing.getLocation());
+        }
+
+        if (updated == null) {
+            return this;
+        }
+
+        return new EmployeeRecordSnapshot(updated, regroup(updated,
+                locations, uids), latest, createdAt);
+    }
+
+    /**
+     * Finds employee.
+     *
+     * @return the found employee or <code>null</code> if employee not found.
+     */
+    public EmployeeRecord findByUid(String uid) {
+        return byUid.get(uid);
+    }
+
+    /**
+     * Finds all employees.
+     *
+     * @return the unmodifiable collection of employees.
+     */
+    public Collection<EmployeeRecord> findAll() {
+        return Collections.unmodifiableCollection(byUid.values());
+    }
+
+    /**
+     * Finds all employees from specified location.
+     *
+     * @return the unmodifiable list of found employees.
+     */
+    public List<EmployeeRecord> findByLocation(String location) {
+        List<EmployeeRecord> employees = byLocation.get(location);
+        if (employees == null) {
+            return Collections.emptyList();
+        }
+
+        return employees;
+    }
+
+    /**
+     * Returns the latest version among records or <code>null</code> if
+     * snapshot is empty.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of records.
+     */
+    public int size() {
+        return byUid.size();
+    }
+
+    /**
+     * Checks that snapshot was fully loaded earlier than the specified period
+     * ago.
+     */
+    public boolean isOlderThan(long period) {
+        return System.currentTimeMillis() - createdAt > period;
+    }
+
+    /**
+     * Builds groups of the given locations again, groups of other locations
+     * are shared.
+     */
+    private Map<String, List<EmployeeRecord>> regroup(
+            Map<String, EmployeeRecord> updated, Set<String> locations,
+            Set<String> uids) {
+        Map<String, List<EmployeeRecord>> groups = new HashMap<String, List<EmployeeRecord>>(
+                byLocation);
+        Map<String, List<EmployeeRecord>> rebuilt = new HashMap<String, List<EmployeeRecord>>();
+        for (String location : locations) {
+            List<EmployeeRecord> group = new ArrayList<EmployeeRecord>();
+            for (EmployeeRecord record : findByLocation(location)) {
+                if (!uids.contains(record.getUid())) {
+                    group.add(record);
+                }
+            }
+            rebuilt.put(location, group);
+        }
+
+        for (String uid : uids) {
+            EmployeeRecord record = updated.get(uid);
+            if (record != null) {
+                rebuilt.get(record.getLocation()).add(record);
+            }
+        }
+
+        for (Map.Entry<String, List<EmployeeRecord>> group : rebuilt
+                .entrySet()) {
+            if (group.getValue().isEmpty()) {
+                groups.remove(group.getKey());
+            } else {
+                groups.put(group.getKey(),
+                        Collections.unmodifiableList(group.getValue()));
+            }
+        }
+        return groups;
+    }
+
+    private static Map<String, List<EmployeeRecord>> groupByLocation(
+            Collection<EmployeeRecord> records) {
+        Map<String, List<EmployeeRecord>> groups = new HashMap<String, List<EmployeeRecord>>();
+        for (EmployeeRecord record : records) {
+            String location = record.getLocation();
+            List<EmployeeRecord> group = groups.get(location);
+            if (group == null) {
+                group = new ArrayList<EmployeeRecord>();
+                groups.put(location, group);
+            }
+            group.add(record);
+        }
+
+        for (Map.Entry<String, List<EmployeeRecord>> group : groups.entrySet()) {
+            group.setValue(Collections.unmodifiableList(group.getValue()));
+        }
+        return groups;
+    }
+
+}
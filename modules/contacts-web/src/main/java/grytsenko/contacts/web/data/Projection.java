@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import grytsenko.contacts.api.Contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Properties of contacts, that were requested by client.
+ * 
+ * <p>
+ * Only attributes for requested properties are received from DS. Details are
+ * loaded from DB only if skype, position or version is requested, because
+ * version of contact includes version of details. Unique identifier is
+ * always included.
+ */
+public final class Projection {
+
+    public static final String UID = "uid";
+    public static final String FIRST_NAME = "firstName";
+    public static final String LAST_NAME = "lastName";
+    public static final String PHOTO_URL = "photoUrl";
+    public static final String MAIL = "mail";
+    public static final String PHONE = "phone";
+    public static final String SKYPE = "skype";
+    public static final String POSITION = "position";
+    public static final String LOCATION = "location";
+    public static final String VERSION = "version";
+
+    private static final List<String> FIELDS = Collections
+            .unmodifiableList(Arrays.asList(UID, FIRST_NAME, LAST_NAME,
+                    PHOTO_URL, MAIL, PHONE, SKYPE, POSITION, LOCATION,
+                    VERSION));
+
+    /**
+     * Projection, that includes all properties.
+     */
+    public static final Projection ALL = new Projection(FIELDS);
+
+    private final List<String> fields;
+
+    /**
+     * Creates projection from names of properties separated by commas.
+     * 
+     * @param names
+     *            the names of properties or <code>null</code> to include all
+     *            properties.
+     * 
+     * @return the created projection.
+     * 
+     * @throws IllegalArgumentException
+     *             if some property is unknown.
+     */
+    public static Projection parse(String names) {
+        if (!StringUtils.hasText(names)) {
+            return ALL;
+        }
+
+        List<String> requested = Arrays.asList(StringUtils
+                .commaDelimitedListToStringArray(names.replaceAll("\\s+", "")));
+        for (String name : requested) {
+            if (StringUtils.hasLength(name) && !FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name
+                        + ".");
+            }
+        }
+
+        List<String> fields = new ArrayList<String>();
+        for (String field : FIELDS) {
+            if (UID.equals(field) || requested.contains(field)) {
+                fields.add(field);
+            }
+        }
+        return new Projection(fields);
+    }
+
+    private Projection(List<String> fields) {
+        this.fields = Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * Checks that property is included.
+     */
+    public boolean includes(String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Checks that all properties are included.
+     */
+    public boolean isAll() {
+        return fields.size() == FIELDS.size();
+    }
+
+    /**
+     * Checks that details from DB are required.
+     */
+    public boolean needsDetails() {
+        return includes(SKYPE) || includes(POSITION) || includes(VERSION);
+    }
+
+    /**
+     * Returns the names of included properties.
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Copies included properties of contact.
+     * 
+     * @return the values of properties mapped by their names.
+     */
+    public Map<String, String> apply(Contact contact) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (String field : fields) {
+            values.put(field, valueOf(contact, field));
+        }
+        return values;
+    }
+
+    private static String valueOf(Contact contact, String field) {
+        if (UID.equals(field)) {
+            return contact.getUid();
+        } else if (FIRST_NAME.equals(field)) {
+            return contact.getFirstName();
+        } else if (LAST_NAME.equals(field)) {
+            return contact.getLastName();
+        } else if (PHOTO_URL.equals(field)) {
+            return contact.getPhotoUrl();
+        } else if (MAIL.equals(field)) {
+            return contact.getMail();
+        } else if (PHONE.equals(field)) {
+            return contact.getPhone();
+        } else if (SKYPE.equals(field)) {
+            return contact.getSkype();
+        } else if (POSITION.equals(field)) {
+            return contact.getPosition();
+        } else if (LOCATION.equals(field)) {
+            return contact.getLocation();
+        } else {
+            return contact.getVersion();
+        }
+    }
+
+}
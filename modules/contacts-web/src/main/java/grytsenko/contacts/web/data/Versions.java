@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data;
+
+import java.util.Collection;
+
+/**
+ * Helps to compare versions of records.
+ * 
+ * <p>
+ * Versions are timestamps that consist of digits, so longer version is always
+ * the later one.
+ */
+public final class Versions {
+
+    /**
+     * Checks that version is later than other one.
+     * 
+     * <p>
+     * Any version is later than <code>null</code>.
+     */
+    public static boolean isLater(String version, String other) {
+        if (version == null) {
+            return false;
+        }
+        if (other == null) {
+            return true;
+        }
+
+        return version.length() > other.length()
+                || version.length() == other.length()
+                && version.compareTo(other) > 0;
+    }
+
+    /**
+     * Finds the latest version among records.
+     * 
+     * @return the latest version or <code>null</code> if records have no
+     *         versions.
+     */
+    public static String findLatest(Collection<EmployeeRecord> records) {
+        String latest = null;
+        for (EmployeeRecord record : records) {
+            if (isLater(record.getVersion(), latest)) {
+                latest = record.getVersion();
+            }
+        }
+        return latest;
+    }
+
+    private Versions() {
+    }
+
+}
@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data.ldap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.directory.DirContext;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.ldap.NamingException;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
+import org.springframework.ldap.pool.factory.PoolingContextSource;
+import org.springframework.ldap.pool.validation.DefaultDirContextValidator;
+
+/**
+ * Source of contexts, where read-only and read-write contexts are taken from
+ * pool.
+ *
+ * <p>
+ * Authenticated contexts are always created by the target source, so this
+ * source can be shared by repositories and authentication.
+ * 
+ * <p>
+ * Each borrow is counted as hit, if idle context was taken, or as miss, if
+ * context was created during this borrow. Contexts created by evictor are
+ * not counted as misses, failed borrows are counted separately.
+ */
+@ManagedResource(objectName = "contacts:name=ldapPool",
+        description = "Pool of connections to DS.")
+public class PooledContextSource implements BaseLdapPathContextSource,
+        InitializingBean, DisposableBean {
+
+    private final PoolingContextSource pool = new PoolingContextSource();
+
+    private BaseLdapPathContextSource targetContextSource;
+
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * Set only while context is borrowed by the current thread, becomes
+     * <code>true</code> when context is created during this borrow.
+     */
+    private final ThreadLocal<Boolean> creating = new ThreadLocal<Boolean>();
+
+    public PooledContextSource() {
+    }
+
+    /**
+     * Sets the source, that creates new contexts.
+     */
+    public void setTargetContextSource(
+            BaseLdapPathContextSource targetContextSource) {
+        this.targetContextSource = targetContextSource;
+    }
+
+    /**
+     * Sets the minimum number of idle contexts of each type.
+     */
+    public void setMinIdle(int minIdle) {
+        pool.setMinIdle(minIdle);
+    }
+
+    /**
+     * Sets the maximum number of idle contexts of each type.
+     */
+    public void setMaxIdle(int maxIdle) {
+        pool.setMaxIdle(maxIdle);
+    }
+
+    /**
+     * Sets the maximum number of active contexts of each type.
+     */
+    public void setMaxActive(int maxActive) {
+        pool.setMaxActive(maxActive);
+    }
+
+    /**
+     * Sets the maximum time in milliseconds to wait for context, if pool is
+     * exhausted.
+     */
+    public void setMaxWait(long maxWait) {
+        pool.setMaxWait(maxWait);
+    }
+
+    /**
+     * Enables validation of contexts when they are borrowed from pool and
+     * while they are idle.
+     */
+    public void setValidate(boolean validate) {
+        pool.setTestOnBorrow(validate);
+        pool.setTestWhileIdle(validate);
+    }
+
+    /**
+     * Sets the period in milliseconds between checks of idle contexts.
+     */
+    public void setEvictionPeriod(long evictionPeriod) {
+        pool.setTimeBetweenEvictionRunsMillis(evictionPeriod);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (targetContextSource == null) {
+            throw new IllegalArgumentException("Target source not defined.");
+        }
+
+        pool.setContextSource(new CountingContextSource());
+        pool.setDirContextValidator(new DefaultDirContextValidator());
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        pool.destroy();
+    }
+
+    @Override
+    public DirContext getReadOnlyContext() throws NamingException {
+        long started = System.nanoTime();
+        creating.set(Boolean.FALSE);
+        boolean success = false;
+        try {
+            DirContext context = pool.getReadOnlyContext();
+            success = true;
+            return context;
+        } finally {
+            registerBorrow(started, success);
+        }
+    }
+
+    @Override
+    public DirContext getReadWriteContext() throws NamingException {
+        long started = System.nanoTime();
+        creating.set(Boolean.FALSE);
+        boolean success = false;
+        try {
+            DirContext context = pool.getReadWriteContext();
+            success = true;
+            return context;
+        } finally {
+            registerBorrow(started, success);
+        }
+    }
+
+    @Override
+    public DirContext getContext(String principal, String credentials)
+            throws NamingException {
+        return targetContextSource.getContext(principal, credentials);
+    }
+
+    @Override
+    public DistinguishedName getBaseLdapPath() {
+        return targetContextSource.getBaseLdapPath();
+    }
+
+    @Override
+    public String getBaseLdapPathAsString() {
+        return targetContextSource.getBaseLdapPathAsString();
+    }
+
+    /**
+     * Returns the number of requests served by idle contexts.
+     */
+    @ManagedAttribute(description = "Requests served by idle contexts.")
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests served by contexts created for them.
+     */
+    @ManagedAttribute(description = "Requests served by new contexts.")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of requests, that did not get context.
+     */
+    @ManagedAttribute(description = "Requests failed to get context.")
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the number of contexts created by pool, including contexts
+     * created by evictor.
+     */
+    @ManagedAttribute(description = "Contexts created by pool.")
+    public long getCreated() {
+        return created.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds spent to get context.
+     */
+    @ManagedAttribute(description = "Average time to get context, ms.")
+    public double getAverageWaitTime() {
+        long count = borrowed.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        double average = (double) waitTime.get() / count;
+        return average / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the maximum time in milliseconds spent to get context.
+     */
+    @ManagedAttribute(description = "Maximum time to get context, ms.")
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    /**
+     * Returns the number of contexts in use.
+     */
+    @ManagedAttribute(description = "Contexts in use.")
+    public int getActive() {
+        return pool.getNumActive();
+    }
+
+    /**
+     * Returns the number of idle contexts.
+     */
+    @ManagedAttribute(description = "Idle contexts.")
+    public int getIdle() {
+        return pool.getNumIdle();
+    }
+
+    private void registerBorrow(long started, boolean success) {
+        long elapsed = System.nanoTime() - started;
+
+        boolean missed = Boolean.TRUE.equals(creating.get());
+        creating.remove();
+
+        borrowed.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        } else if (missed) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        waitTime.addAndGet(elapsed);
+
+        long max = maxWaitTime.get();
+        while (elapsed > max && !maxWaitTime.compareAndSet(max, elapsed)) {
+            max = maxWaitTime.get();
+        }
+    }
+
+    private void registerCreation() {
+        created.incrementAndGet();
+        if (creating.get() != null) {
+            creating.set(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Counts contexts created for pool and marks borrow of the current thread
+     * as miss.
+     */
+    private class CountingContextSource implements ContextSource {
+
+        @Override
+        public DirContext getReadOnlyContext() throws NamingException {
+            registerCreation();
+            return targetContextSource.getReadOnlyContext();
+        }
+
+        @Override
+        public DirContext getReadWriteContext() throws NamingException {
+            registerCreation();
+            return targetContextSource.getReadWriteContext();
+        }
+
+        @Override
+        public DirContext getContext(String principal, String credentials)
+                throws NamingException {
+            return targetContextSource.getContext(principal, credentials);
+        }
+
+    }
+
+}
@@ -18,15 +18,21 @@ package grytsenko.contacts.web.data.mapper;
 import grytsenko.contacts.api.Contact;
 import grytsenko.contacts.web.data.EmployeeDetails;
 import grytsenko.contacts.web.data.EmployeeRecord;
-
-import org.dozer.DozerBeanMapper;
-import org.dozer.Mapper;
+import grytsenko.contacts.web.metrics.LatencyHistogram;
+import grytsenko.contacts.web.metrics.Metrics;
 
 /**
  * Helps to get contact information.
+ * 
+ * <p>
+ * Properties are copied directly, because mapper is called for each contact
+ * in response.
  */
 public final class ContactMapper {
 
+    private static final LatencyHistogram MAP_TIMER = Metrics
+            .timer("contact_mapper_seconds");
+
     /**
      * Gets contact of employee.
      * 
@@ -41,16 +47,29 @@ public final class ContactMapper {
         if (record == null) {
             throw new IllegalArgumentException("Invalid record.");
         }
+        long started = System.nanoTime();
         Contact contact = new Contact();
 
-        Mapper mapper = new DozerBeanMapper();
-        mapper.map(record, contact);
+        contact.setUid(record.getUid());
+
+        contact.setFirstName(record.getFirstName());
+        contact.setLastName(record.getLastName());
+
+        contact.setPhotoUrl(record.getPhotoUrl());
+
+        contact.setMail(record.getMail());
+        contact.setPhone(record.getPhone());
+
+        contact.setLocation(record.getLocation());
+
         if (details != null) {
-            mapper.map(details, contact);
+            contact.setSkype(details.getSkype());
+            contact.setPosition(details.getPosition());
         }
 
         contact.setVersion(mapVersion(record, details));
 
+        MAP_TIMER.recordSince(started);
         return contact;
     }
 
@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Histogram of latencies in nanoseconds.
+ * 
+ * <p>
+ * Each power of two is split into 8 buckets, so error of percentiles is less
+ * than 12.5%. Recording takes few atomic increments and allocates memory only
+ * when the next slice of window is started.
+ * 
+ * <p>
+ * If histogram has window, then percentiles and maximum are calculated only
+ * for latencies recorded during window, so recent changes are not hidden by
+ * old latencies. Window is split into 5 slices and the oldest slice is
+ * dropped as a whole, so at least 4/5 of window is covered. Count and sum are
+ * always calculated since creation of histogram.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final int SLICES = 5;
+
+    private final long createdAt = System.nanoTime();
+    private final long window;
+    private final long sliceLength;
+    private final AtomicReferenceArray<Slice> slices;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Creates histogram of all recorded latencies.
+     */
+    public LatencyHistogram() {
+        this.window = 0;
+        this.sliceLength = Long.MAX_VALUE;
+        this.slices = new AtomicReferenceArray<Slice>(1);
+    }
+
+    /**
+     * Creates histogram of latencies recorded during the recent period.
+     * 
+     * @param window
+     *            the length of period.
+     * @param unit
+     *            the unit of length.
+     */
+    public LatencyHistogram(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid window.");
+        }
+
+        this.window = unit.toNanos(window);
+        this.sliceLength = Math.max(this.window / SLICES, 1);
+        this.slices = new AtomicReferenceArray<Slice>(SLICES);
+    }
+
+    /**
+     * Records latency since the given moment.
+     * 
+     * @param started
+     *            the value of {@link System#nanoTime()} at start.
+     */
+    public void recordSince(long started) {
+        record(System.nanoTime() - started);
+    }
+
+    /**
+     * Records latency.
+     * 
+     * @param nanos
+     *            the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+
+        currentSlice().record(index(value), value);
+        count.incrementAndGet();
+        sum.addAndGet(value);
+    }
+
+    /**
+     * Returns the length of window in the given unit or 0 if histogram has no
+     * window.
+     */
+    public long getWindow(TimeUnit unit) {
+        return unit.convert(window, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of recorded latencies in nanoseconds.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the maximum latency in nanoseconds, that was recorded during
+     * window.
+     */
+    public long getMax() {
+        long max = 0;
+        for (Slice slice : liveSlices()) {
+            max = Math.max(max, slice.max.get());
+        }
+        return max;
+    }
+
+    /**
+     * Returns the latency in nanoseconds, that is not exceeded by the given
+     * part of latencies recorded during window.
+     * 
+     * @param quantile
+     *            the part of latencies from 0 to 1.
+     * 
+     * @return the upper bound of latencies or 0 if nothing was recorded.
+     */
+    public long getPercentile(double quantile) {
+        Slice[] live = liveSlices();
+
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        long max = 0;
+        for (Slice slice : live) {
+            for (int i = 0; i < BUCKETS; ++i) {
+                long sliceCount = slice.counts.get(i);
+                counts[i] += sliceCount;
+                total += sliceCount;
+            }
+            max = Math.max(max, slice.max.get());
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max((long) Math.ceil(quantile * total), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private long currentEpoch() {
+        return (System.nanoTime() - createdAt) / sliceLength;
+    }
+
+    /**
+     * Returns slice for the current moment, slice of the same position from
+     * the previous rotation is replaced.
+     */
+    private Slice currentSlice() {
+        long epoch = currentEpoch();
+        int position = (int) (epoch % slices.length());
+        while (true) {
+            Slice slice = slices.get(position);
+            if (slice != null && slice.epoch >= epoch) {
+                return slice;
+            }
+
+            Slice created = new Slice(epoch);
+            if (slices.compareAndSet(position, slice, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Returns slices, that belong to window.
+     */
+    private Slice[] liveSlices() {
+        long oldest = currentEpoch() - slices.length() + 1;
+
+        Slice[] live = new Slice[slices.length()];
+        int found = 0;
+        for (int i = 0; i < slices.length(); ++i) {
+            Slice slice = slices.get(i);
+            if (slice != null && slice.epoch >= oldest) {
+                live[found++] = slice;
+            }
+        }
+        return Arrays.copyOf(live, found);
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long lowerBound = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * Latencies recorded during part of window.
+     */
+    private static final class Slice {
+
+        private final long epoch;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        public Slice(long epoch) {
+            this.epoch = epoch;
+        }
+
+        public void record(int index, long value) {
+            counts.incrementAndGet(index);
+
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+    }
+
+}
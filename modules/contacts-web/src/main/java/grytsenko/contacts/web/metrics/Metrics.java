@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of timers and counters.
+ * 
+ * <p>
+ * Metrics are identified by name and optional label, like in Prometheus.
+ * Registry is static, so metrics can be taken in the same way as loggers.
+ * 
+ * <p>
+ * Percentiles of timers are calculated for the last 5 minutes.
+ */
+public final class Metrics {
+
+    private static final long TIMER_WINDOW_MINUTES = 5;
+
+    private static final ConcurrentMap<String, LatencyHistogram> TIMERS = new ConcurrentHashMap<String, LatencyHistogram>();
+    private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<String, AtomicLong>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the timer with the given name.
+     */
+    public static LatencyHistogram timer(String name) {
+        return timer(name, null, null);
+    }
+
+    /**
+     * Returns the timer with the given name and label.
+     */
+    public static LatencyHistogram timer(String name, String labelName,
+            String labelValue) {
+        String key = createKey(name, labelName, labelValue);
+        LatencyHistogram timer = TIMERS.get(key);
+        if (timer != null) {
+            return timer;
+        }
+
+        LatencyHistogram created = new LatencyHistogram(
+                TIMER_WINDOW_MINUTES, TimeUnit.MINUTES);
+        timer = TIMERS.putIfAbsent(key, created);
+        return timer != null ? timer : created;
+    }
+
+    /**
+     * Returns the counter with the given name and label.
+     */
+    public static AtomicLong counter(String name, String labelName,
+            String labelValue) {
+        String key = createKey(name, labelName, labelValue);
+        AtomicLong counter = COUNTERS.get(key);
+        if (counter != null) {
+            return counter;
+        }
+
+        AtomicLong created = new AtomicLong();
+        counter = COUNTERS.putIfAbsent(key, created);
+        return counter != null ? counter : created;
+    }
+
+    /**
+     * Returns all timers sorted by keys.
+     */
+    public static SortedMap<String, LatencyHistogram> getTimers() {
+        return new TreeMap<String, LatencyHistogram>(TIMERS);
+    }
+
+    /**
+     * Returns all counters sorted by keys.
+     */
+    public static SortedMap<String, AtomicLong> getCounters() {
+        return new TreeMap<String, AtomicLong>(COUNTERS);
+    }
+
+    /**
+     * Key has format <code>name</code> or <code>name{label="value"}</code>.
+     */
+    private static String createKey(String name, String labelName,
+            String labelValue) {
+        if (labelName == null) {
+            return name;
+        }
+
+        String value = labelValue.replace("\\", "\\\\").replace("\"", "\\\"");
+        return name + '{' + labelName + "=\"" + value + "\"}";
+    }
+
+    /**
+     * Splits key to name and labels.
+     * 
+     * @return the name and labels, labels are empty if key has no label.
+     */
+    static String[] splitKey(String key) {
+        int labels = key.indexOf('{');
+        if (labels < 0) {
+            return new String[] { key, "" };
+        }
+
+        return new String[] { key.substring(0, labels),
+                key.substring(labels + 1, key.length() - 1) };
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Measures time of processing of requests by handlers of controllers.
+ */
+public class MetricsInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String STARTED = MetricsInterceptor.class.getName()
+            + ".STARTED";
+
+    /**
+     * Returns the name of handler for labels of metrics.
+     * 
+     * @return the name of handler or <code>null</code> if handler is not
+     *         method of controller.
+     */
+    public static String getHandlerName(Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return null;
+        }
+
+        HandlerMethod method = (HandlerMethod) handler;
+        return method.getBeanType().getSimpleName() + '.'
+                + method.getMethod().getName();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request,
+            HttpServletResponse response, Object handler) throws Exception {
+        request.setAttribute(STARTED, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+            HttpServletResponse response, Object handler, Exception exception)
+            throws Exception {
+        Object started = request.getAttribute(STARTED);
+        String name = getHandlerName(handler);
+        if (!(started instanceof Long) || name == null) {
+            return;
+        }
+
+        Metrics.timer("http_handler_seconds", "handler", name).recordSince(
+                (Long) started);
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.metrics;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes metrics in text format of Prometheus.
+ * 
+ * <p>
+ * Timers are written as summaries with 50%, 99% and 99.9% percentiles in
+ * seconds. Percentiles are calculated for window of timer, while sum and
+ * count are calculated since start, window is described in help of summary.
+ */
+public final class MetricsWriter {
+
+    /**
+     * The type of content, that is written.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS
+            .toNanos(1);
+
+    private MetricsWriter() {
+    }
+
+    /**
+     * Writes all registered metrics.
+     */
+    public static void write(PrintWriter writer) {
+        Set<String> described = new HashSet<String>();
+
+        for (Map.Entry<String, LatencyHistogram> timer : Metrics.getTimers()
+                .entrySet()) {
+            String[] key = Metrics.splitKey(timer.getKey());
+            String name = key[0];
+            String labels = key[1];
+            LatencyHistogram histogram = timer.getValue();
+
+            if (described.add(name)) {
+                writer.println("# HELP " + name + " " + describe(histogram));
+                writer.println("# TYPE " + name + " summary");
+            }
+            for (double quantile : QUANTILES) {
+                String quantileLabel = "quantile=\"" + quantile + "\"";
+                writeValue(writer, name, join(labels, quantileLabel),
+                        toSeconds(histogram.getPercentile(quantile)));
+            }
+            writeValue(writer, name + "_sum", labels,
+                    toSeconds(histogram.getSum()));
+            writeValue(writer, name + "_count", labels,
+                    Long.toString(histogram.getCount()));
+        }
+
+        for (Map.Entry<String, AtomicLong> counter : Metrics.getCounters()
+                .entrySet()) {
+            String[] key = Metrics.splitKey(counter.getKey());
+            String name = key[0];
+            String labels = key[1];
+
+            if (described.add(name)) {
+                writer.println("# TYPE " + name + " counter");
+            }
+            writeValue(writer, name, labels,
+                    Long.toString(counter.getValue().get()));
+        }
+
+        writer.flush();
+    }
+
+    private static String describe(LatencyHistogram histogram) {
+        long window = histogram.getWindow(TimeUnit.SECONDS);
+        if (window == 0) {
+            return "Latency in seconds, quantiles since start.";
+        }
+
+        return "Latency in seconds, quantiles for the last " + window
+                + " seconds, sum and count since start.";
+    }
+
+    private static void writeValue(PrintWriter writer, String name,
+            String labels, String value) {
+        writer.print(name);
+        if (labels.length() > 0) {
+            writer.print('{');
+            writer.print(labels);
+            writer.print('}');
+        }
+        writer.print(' ');
+        writer.println(value);
+    }
+
+    private static String join(String labels, String label) {
+        return labels.length() > 0 ? labels + ',' + label : label;
+    }
+
+    private static String toSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Measures time of calls of methods of bean.
+ * 
+ * <p>
+ * Timers are labeled by names of methods.
+ */
+public class TimingMethodInterceptor implements MethodInterceptor {
+
+    private String metricName;
+
+    public TimingMethodInterceptor() {
+    }
+
+    /**
+     * Sets the name of timers.
+     */
+    public void setMetricName(String metricName) {
+        this.metricName = metricName;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long started = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            Metrics.timer(metricName, "method",
+                    invocation.getMethod().getName()).recordSince(started);
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.rest;
+
+import grytsenko.contacts.web.metrics.MetricsWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Processes requests of administrators.
+ * 
+ * <p>
+ * Only users with role <code>ROLE_ADMIN</code> have access.
+ */
+@Controller
+@RequestMapping("admin")
+public class AdminController {
+
+    /**
+     * Sends metrics in text format of Prometheus.
+     */
+    @RequestMapping(value = "metrics", method = RequestMethod.GET)
+    public void metrics(HttpServletResponse response) throws IOException {
+        response.setContentType(MetricsWriter.CONTENT_TYPE);
+
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                response.getOutputStream(), "UTF-8"));
+        MetricsWriter.write(writer);
+    }
+
+}
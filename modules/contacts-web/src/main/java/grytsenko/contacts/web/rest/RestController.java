@@ -15,22 +15,63 @@
  */
 package grytsenko.contacts.web.rest;
 
+import grytsenko.contacts.api.Changes;
 import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.Projection;
+import grytsenko.contacts.web.service.ChangesService;
+import grytsenko.contacts.web.service.ContactJsonCache;
+import grytsenko.contacts.web.service.ContactHandler;
+import grytsenko.contacts.web.service.Coworkers;
+import grytsenko.contacts.web.service.IndexService;
+import grytsenko.contacts.web.service.LocationService;
+import grytsenko.contacts.web.service.Photo;
+import grytsenko.contacts.web.service.PhotoService;
 import grytsenko.contacts.web.service.SearchService;
+import grytsenko.contacts.web.service.VersionService;
+import grytsenko.contacts.web.util.VersionDigest;
 
-import java.security.Principal;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  * Processes requests to REST API.
+ * 
+ * <p>
+ * Responses with contacts are marked by ETag, that is built from versions of
+ * contacts. If client sends the same ETag, then we respond with status 304.
+ * 
+ * <p>
+ * Contacts of coworkers can be streamed to response as soon as they are found.
+ * Such response has no ETag, because it is not known before the whole list is
+ * written.
+ * 
+ * <p>
+ * Contacts of coworkers are written from cache of serialized contacts, so
+ * only changed contacts are serialized again.
+ * 
+ * <p>
+ * Record of current user is received from DS during authentication, so it is
+ * not requested again.
  */
 @Controller
 public class RestController {
@@ -38,34 +79,323 @@ public class RestController {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(RestController.class);
 
+    /**
+     * The maximum number of employees in single batch.
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
     @Autowired
     SearchService searchService;
+    @Autowired
+    LocationService locationService;
+    @Autowired
+    ChangesService changesService;
+    @Autowired
+    IndexService indexService;
+    @Autowired
+    PhotoService photoService;
+    @Autowired
+    VersionService versionService;
+    @Autowired
+    ContactJsonCache contactJsonCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * Finds contact of current user.
      */
     @RequestMapping(value = "my", method = RequestMethod.GET)
     @ResponseBody
-    public Contact my(Principal principal) {
-        String username = principal.getName();
-        LOGGER.debug("Get contact of {}.", username);
+    public Contact my(EmployeeRecord employee, HttpServletRequest request,
+            HttpServletResponse response) {
+        LOGGER.debug("Get contact of {}.", employee.getUid());
+
+        Contact contact = searchService.findEmployee(employee);
+        if (checkNotModified(Collections.singletonList(contact), request,
+                response)) {
+            return null;
+        }
 
-        return searchService.findEmployee(username);
+        return contact;
     }
 
     /**
-     * Finds contacts of coworkers of current user.
+     * Finds contacts of coworkers of current user sorted by full names.
      */
     @RequestMapping(value = "coworkers", method = RequestMethod.GET)
-    @ResponseBody
-    public List<Contact> coworkers(Principal principal) {
-        String username = principal.getName();
-        LOGGER.debug("Get coworkers of {}.", username);
+    public void coworkers(EmployeeRecord employee, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        LOGGER.debug("Get coworkers of {}.", employee.getUid());
 
-        List<Contact> contacts = searchService.findCoworkers(username);
+        Coworkers coworkers = locationService
+                .findCoworkersWithVersion(employee);
+        if (checkNotModified('"' + coworkers.getVersion() + '"', request,
+                response)) {
+            return;
+        }
+
+        List<Contact> contacts = coworkers.getContacts();
         LOGGER.debug("Found {} coworkers.", contacts.size());
 
-        return contacts;
+        response.setContentType("application/json;charset=UTF-8");
+        contactJsonCache.writeArray(contacts, response.getOutputStream());
+    }
+
+    /**
+     * Streams contacts of coworkers of current user to response.
+     */
+    @RequestMapping(value = "coworkers", method = RequestMethod.GET,
+            params = { "stream=true", "!fields" })
+    public void coworkersStream(EmployeeRecord employee,
+            HttpServletResponse response) throws IOException {
+        LOGGER.debug("Stream coworkers of {}.", employee.getUid());
+
+        StreamingHandler handler = new StreamingHandler(response);
+        searchService.findCoworkers(employee, handler);
+        handler.close();
+    }
+
+    /**
+     * Streams contacts of coworkers of current user to response, where only
+     * the requested properties are included.
+     * 
+     * <p>
+     * Names of properties are separated by commas, identifier is always
+     * included. Contacts are not sorted and response has no ETag. If some
+     * property is unknown, then responds with status 400.
+     */
+    @RequestMapping(value = "coworkers", method = RequestMethod.GET,
+            params = "fields")
+    public void coworkersFields(EmployeeRecord employee,
+            @RequestParam("fields") String fields, HttpServletResponse response)
+            throws IOException {
+        LOGGER.debug("Stream {} of coworkers of {}.", fields,
+                employee.getUid());
+
+        final Projection projection;
+        try {
+            projection = Projection.parse(fields);
+        } catch (IllegalArgumentException exception) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    exception.getMessage());
+            return;
+        }
+
+        response.setContentType("application/json;charset=UTF-8");
+        final JsonGenerator generator = objectMapper.getJsonFactory()
+                .createJsonGenerator(response.getOutputStream(),
+                        JsonEncoding.UTF8);
+
+        generator.writeStartArray();
+        searchService.findCoworkers(employee, projection, new ContactHandler() {
+            @Override
+            public void handle(Contact contact) {
+                try {
+                    generator.writeObject(projection.apply(contact));
+                } catch (IOException exception) {
+                    throw new IllegalStateException("Could not write contact.",
+                            exception);
+                }
+            }
+        });
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    /**
+     * Streams contacts of several employees to response.
+     * 
+     * <p>
+     * Identifiers of employees are sent as JSON array. Employees that were not
+     * found are skipped. If too many identifiers are sent, then responds with
+     * status 400.
+     */
+    @RequestMapping(value = "contacts/batch", method = RequestMethod.POST)
+    public void contactsBatch(@RequestBody List<String> uids,
+            HttpServletResponse response) throws IOException {
+        LOGGER.debug("Get contacts of {} employees.", uids.size());
+
+        if (uids.size() > MAX_BATCH_SIZE) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Too many employees.");
+            return;
+        }
+
+        StreamingHandler handler = new StreamingHandler(response);
+        searchService.findEmployees(uids, handler);
+        handler.close();
+    }
+
+    /**
+     * Sends version of coworkers of current user as plain text.
+     * 
+     * <p>
+     * Version is equal to ETag of coworkers without quotes, so client can
+     * skip loading of coworkers, if version was not changed.
+     */
+    @RequestMapping(value = "coworkers/version", method = RequestMethod.GET)
+    public void coworkersVersion(EmployeeRecord employee,
+            HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        LOGGER.debug("Get version of coworkers of {}.", employee.getUid());
+
+        String version = versionService.findCoworkersVersion(employee);
+        if (checkNotModified('"' + version + '"', request, response)) {
+            return;
+        }
+
+        response.setContentType("text/plain; charset=UTF-8");
+        response.getWriter().write(version);
+    }
+
+    /**
+     * Finds changes in contacts of coworkers of current user.
+     * 
+     * <p>
+     * If the known version is too old, then responds with status 410.
+     */
+    @RequestMapping(value = "coworkers/changes", method = RequestMethod.GET)
+    @ResponseBody
+    public Changes coworkersChanges(EmployeeRecord employee,
+            @RequestParam(value = "since", required = false) String since,
+            HttpServletResponse response) {
+        LOGGER.debug("Get changes in coworkers of {} since {}.",
+                employee.getUid(), since);
+
+        Changes changes = changesService.findChanges(employee, since);
+        if (changes == null) {
+            response.setStatus(HttpServletResponse.SC_GONE);
+            return null;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Finds contacts of employees by prefixes of names, mail or position.
+     */
+    @RequestMapping(value = "search", method = RequestMethod.GET)
+    @ResponseBody
+    public List<Contact> search(@RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        LOGGER.debug("Search contacts by '{}'.", query);
+
+        return indexService.search(query, limit);
+    }
+
+    /**
+     * Sends photo of employee resized to the given size.
+     * 
+     * <p>
+     * If employee has no photo, then responds with status 404.
+     */
+    @RequestMapping(value = "photos/{uid:.+}", method = RequestMethod.GET)
+    public void photo(@PathVariable("uid") String uid,
+            @RequestParam(value = "size", defaultValue = "96") int size,
+            HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        LOGGER.debug("Get photo of {}.", uid);
+
+        Photo photo = photoService.findPhoto(uid, size);
+        if (photo == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (photo.getLastModified() > 0) {
+            response.setDateHeader("Last-Modified", photo.getLastModified());
+        }
+        if (checkNotModified('"' + photo.getEtag() + '"', request, response)) {
+            return;
+        }
+        if (request.getHeader("If-None-Match") == null
+                && photo.getLastModified() > 0) {
+            long since = request.getDateHeader("If-Modified-Since");
+            if (since >= photo.getLastModified() / 1000 * 1000) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        response.setContentType(photo.getContentType());
+        response.setContentLength(photo.getData().length);
+        response.getOutputStream().write(photo.getData());
+    }
+
+    /**
+     * Sets ETag for response and checks that client has the same data.
+     * 
+     * @return <code>true</code> if client has the same data and response
+     *         should have no body, <code>false</code> otherwise.
+     */
+    private static boolean checkNotModified(List<Contact> contacts,
+            HttpServletRequest request, HttpServletResponse response) {
+        String etag = '"' + VersionDigest.of(contacts).toString() + '"';
+        return checkNotModified(etag, request, response);
+    }
+
+    private static boolean checkNotModified(String etag,
+            HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("ETag", etag);
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String clientEtag : ifNoneMatch.split(",")) {
+            String candidate = clientEtag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+
+            if (candidate.equals(etag) || candidate.equals("*")) {
+                LOGGER.debug("Data not modified since {}.", etag);
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes contacts to response as elements of JSON array.
+     */
+    private class StreamingHandler implements ContactHandler {
+
+        private final OutputStream stream;
+        private boolean first = true;
+
+        public StreamingHandler(HttpServletResponse response)
+                throws IOException {
+            response.setContentType("application/json;charset=UTF-8");
+            stream = response.getOutputStream();
+            stream.write('[');
+        }
+
+        @Override
+        public void handle(Contact contact) {
+            try {
+                if (!first) {
+                    stream.write(',');
+                }
+                stream.write(contactJsonCache.toJson(contact));
+                first = false;
+            } catch (IOException exception) {
+                throw new IllegalStateException("Could not write contact.",
+                        exception);
+            }
+        }
+
+        /**
+         * Finishes array.
+         */
+        public void close() throws IOException {
+            stream.write(']');
+            stream.flush();
+        }
+
     }
 
 }
@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.security;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Remembers successful authentications for some time, so repeated requests
+ * with the same credentials are not checked by the target provider.
+ * 
+ * <p>
+ * Passwords are not kept, only their hashes with random salt, that is
+ * generated on startup. The number of remembered authentications is limited,
+ * the least recently used ones are forgotten first.
+ */
+@ManagedResource(objectName = "contacts:name=authenticationCache",
+        description = "Cache of successful authentications.")
+public class CachingAuthenticationProvider implements AuthenticationProvider,
+        InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(CachingAuthenticationProvider.class);
+
+    private static final int SALT_LENGTH = 16;
+
+    private AuthenticationProvider delegate;
+    private long timeToLive;
+    private int maxSize;
+
+    private final byte[] salt = new byte[SALT_LENGTH];
+
+    private Map<String, CachedAuthentication> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingAuthenticationProvider() {
+    }
+
+    /**
+     * Sets the provider, that checks credentials.
+     */
+    public void setDelegate(AuthenticationProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets the time in milliseconds, during which authentication is
+     * remembered.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Sets the maximum number of remembered authentications.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate not defined.");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid size.");
+        }
+
+        new SecureRandom().nextBytes(salt);
+        cache = new LinkedHashMap<String, CachedAuthentication>(16, 0.75f,
+                true) {
+            private static final long serialVersionUID = -1745934513254868420L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, CachedAuthentication> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication)
+            throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+
+        byte[] hash = hash(credentials.toString());
+
+        CachedAuthentication cached;
+        synchronized (cache) {
+            cached = cache.get(username);
+        }
+        if (cached != null && cached.matches(hash)) {
+            hits.incrementAndGet();
+            LOGGER.debug("Authentication of {} found in cache.", username);
+            return cached.copy();
+        }
+
+        misses.incrementAndGet();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            CachedAuthentication created = new CachedAuthentication(result,
+                    hash, System.currentTimeMillis() + timeToLive);
+            synchronized (cache) {
+                cache.put(username, created);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    /**
+     * Forgets authentication of user.
+     */
+    @ManagedOperation(description = "Forgets authentication of user.")
+    public void invalidate(String username) {
+        LOGGER.debug("Forget authentication of {}.", username);
+        synchronized (cache) {
+            cache.remove(username);
+        }
+    }
+
+    /**
+     * Forgets all authentications.
+     */
+    @ManagedOperation(description = "Forgets all authentications.")
+    public void invalidateAll() {
+        LOGGER.debug("Forget all authentications.");
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of authentications found in cache.
+     */
+    @ManagedAttribute(description = "Authentications found in cache.")
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of authentications checked by delegate.
+     */
+    @ManagedAttribute(description = "Authentications checked by delegate.")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of hits to all authentications.
+     */
+    @ManagedAttribute(description = "Ratio of hits to all authentications.")
+    public double getHitRate() {
+        long found = hits.get();
+        long total = found + misses.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        return (double) found / total;
+    }
+
+    /**
+     * Returns the number of remembered authentications.
+     */
+    @ManagedAttribute(description = "Remembered authentications.")
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private byte[] hash(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 not supported.",
+                    exception);
+        } catch (UnsupportedEncodingException exception) {
+            throw new IllegalStateException("UTF-8 not supported.", exception);
+        }
+    }
+
+    /**
+     * Successful authentication and hash of password, that was used.
+     */
+    private static class CachedAuthentication {
+
+        private final Authentication authentication;
+        private final byte[] hash;
+        private final long expiresAt;
+
+        public CachedAuthentication(Authentication authentication,
+                byte[] hash, long expiresAt) {
+            this.authentication = authentication;
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean matches(byte[] otherHash) {
+            return System.currentTimeMillis() < expiresAt
+                    && MessageDigest.isEqual(hash, otherHash);
+        }
+
+        /**
+         * Creates new authentication, so details of requests are not shared.
+         */
+        public Authentication copy() {
+            return new UsernamePasswordAuthenticationToken(
+                    authentication.getPrincipal(),
+                    authentication.getCredentials(),
+                    authentication.getAuthorities());
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.security;
+
+import grytsenko.contacts.web.data.EmployeeRecord;
+
+import java.security.Principal;
+import java.util.Collection;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.ldap.userdetails.LdapUserDetails;
+
+/**
+ * Details of authenticated user together with record of employee, that was
+ * received from DS during authentication.
+ * 
+ * <p>
+ * Record is not updated after authentication.
+ */
+public final class EmployeeUserDetails implements LdapUserDetails,
+        CredentialsContainer {
+
+    private static final long serialVersionUID = -3817461020361427735L;
+
+    private final LdapUserDetails details;
+    private final EmployeeRecord record;
+
+    /**
+     * Extends details of user by record of employee.
+     */
+    public EmployeeUserDetails(LdapUserDetails details, EmployeeRecord record) {
+        this.details = details;
+        this.record = record;
+    }
+
+    /**
+     * Finds record of employee, that was received during authentication.
+     * 
+     * @return the found record or <code>null</code> if record is not known.
+     */
+    public static EmployeeRecord findRecord(Principal principal) {
+        if (!(principal instanceof Authentication)) {
+            return null;
+        }
+
+        Object details = ((Authentication) principal).getPrincipal();
+        if (!(details instanceof EmployeeUserDetails)) {
+            return null;
+        }
+
+        return ((EmployeeUserDetails) details).getRecord();
+    }
+
+    /**
+     * Returns the record of employee.
+     */
+    public EmployeeRecord getRecord() {
+        return record;
+    }
+
+    @Override
+    public String getDn() {
+        return details.getDn();
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return details.getAuthorities();
+    }
+
+    @Override
+    public String getPassword() {
+        return details.getPassword();
+    }
+
+    @Override
+    public String getUsername() {
+        return details.getUsername();
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return details.isAccountNonExpired();
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return details.isAccountNonLocked();
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return details.isCredentialsNonExpired();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return details.isEnabled();
+    }
+
+    @Override
+    public void eraseCredentials() {
+        if (details instanceof CredentialsContainer) {
+            ((CredentialsContainer) details).eraseCredentials();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return details.toString();
+    }
+
+}
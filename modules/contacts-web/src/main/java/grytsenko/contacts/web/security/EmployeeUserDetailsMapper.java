@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.security;
+
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.EmployeeRecordRepository;
+
+import java.util.Collection;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.support.LdapUtils;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.ldap.userdetails.LdapUserDetails;
+import org.springframework.security.ldap.userdetails.LdapUserDetailsMapper;
+import org.springframework.security.ldap.userdetails.UserDetailsContextMapper;
+
+/**
+ * Creates details of user from entry, that was received from DS during
+ * authentication, and keeps record of employee in them.
+ * 
+ * <p>
+ * So handlers of requests know location of user without additional request
+ * to DS. Attributes of employee must be requested by authenticator.
+ */
+public class EmployeeUserDetailsMapper implements UserDetailsContextMapper,
+        InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(EmployeeUserDetailsMapper.class);
+
+    private final LdapUserDetailsMapper delegate = new LdapUserDetailsMapper();
+
+    private EmployeeRecordRepository employeesRepository;
+
+    public EmployeeUserDetailsMapper() {
+    }
+
+    /**
+     * Sets the repository, that creates records from attributes.
+     */
+    public void setEmployeesRepository(
+            EmployeeRecordRepository employeesRepository) {
+        this.employeesRepository = employeesRepository;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (employeesRepository == null) {
+            throw new IllegalArgumentException("Repository not defined.");
+        }
+    }
+
+    @Override
+    public UserDetails mapUserFromContext(DirContextOperations ctx,
+            String username, Collection<? extends GrantedAuthority> authorities) {
+        LdapUserDetails details = (LdapUserDetails) delegate
+                .mapUserFromContext(ctx, username, authorities);
+
+        Attributes attributes;
+        try {
+            attributes = ctx.getAttributes("");
+        } catch (NamingException exception) {
+            throw LdapUtils.convertLdapException(exception);
+        }
+
+        EmployeeRecord record = employeesRepository
+                .mapFromAttributes(attributes);
+        LOGGER.debug("Location of {} is {}.", username, record.getLocation());
+
+        return new EmployeeUserDetails(details, record);
+    }
+
+    @Override
+    public void mapUserToContext(UserDetails user, DirContextAdapter ctx) {
+        delegate.mapUserToContext(user, ctx);
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Changes;
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeRecord;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds changes in contacts of coworkers.
+ *
+ * <p>
+ * For each location {@link LocationService} remembers several recent
+ * revisions, i.e. versions of contacts of all employees from location. The
+ * version of coworkers of employee is the digest of revision without
+ * employee, so it is equal to ETag of coworkers. Changes are found by
+ * versions of contacts in the current and the known revisions, so contacts
+ * are not loaded for each request.
+ */
+@Service
+public class ChangesService {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ChangesService.class);
+
+    @Autowired
+    LocationService locationService;
+
+    /**
+     * Finds changes in contacts of coworkers of employee.
+     *
+     * @param employee
+     *            the record of employee.
+     * @param since
+     *            the known version of coworkers or <code>null</code> to get
+     *            all coworkers.
+     *
+     * @return the found changes or <code>null</code> if the known version is
+     *         too old.
+     */
+    public Changes findChanges(EmployeeRecord employee, String since) {
+        String employeeUid = employee.getUid();
+        LocationContacts current = locationService.findLocation(employee);
+
+        LocationContacts known = null;
+        if (since != null) {
+            known = locationService.findRevision(current.getLocation(), since,
+                    employeeUid);
+            if (known == null) {
+                LOGGER.debug("Version {} of {} is unknown.", since,
+                        current.getLocation());
+                return null;
+            }
+        }
+
+        Changes changes = new Changes();
+        changes.setVersion(current.getDigestWithout(employeeUid).toString());
+
+        for (Contact contact : current.getContacts()) {
+            String uid = contact.getUid();
+            if (employeeUid.equals(uid)) {
+                continue;
+            }
+
+            String knownVersion = known != null ? known.getVersion(uid) : null;
+            if (knownVersion == null) {
+                changes.getAdded().add(contact);
+            } else if (!knownVersion.equals(contact.getVersion())) {
+                changes.getUpdated().add(contact);
+            }
+        }
+
+        if (known != null) {
+            for (String uid : known.getUids()) {
+                if (!current.contains(uid) && !employeeUid.equals(uid)) {
+                    changes.getRemoved().add(uid);
+                }
+            }
+        }
+
+        LOGGER.debug("Found {} added, {} updated and {} removed contacts.",
+                new Object[] { changes.getAdded().size(),
+                        changes.getUpdated().size(),
+                        changes.getRemoved().size() });
+        return changes;
+    }
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeChangedEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache of contacts serialized to JSON.
+ * 
+ * <p>
+ * Contact is serialized again only when its version is changed, so most
+ * responses are assembled from ready fragments. Only the latest version of
+ * each contact is kept.
+ * 
+ * <p>
+ * The number of contacts is limited, the least recently used contacts are
+ * forgotten first. So contacts of removed employees are forgotten, even if
+ * changes of employees are not tracked.
+ * 
+ * <p>
+ * Contacts are taken from cache without locks. Order of use is approximate:
+ * each contact remembers the number of serializations at its last use. When
+ * cache is full, single thread forgets the least recently used tenth of
+ * contacts at once.
+ */
+@Service
+@ManagedResource(objectName = "contacts:name=contactJson",
+        description = "Cache of contacts serialized to JSON.")
+public class ContactJsonCache implements
+        ApplicationListener<EmployeeChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ContactJsonCache.class);
+
+    @Value("#{appProperties['json.cache.size']}")
+    int maxSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ConcurrentMap<String, Fragment> fragments = new ConcurrentHashMap<String, Fragment>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ContactJsonCache() {
+    }
+
+    /**
+     * Serializes contact to JSON in UTF-8.
+     * 
+     * <p>
+     * Returned bytes are shared between callers, so they must not be
+     * modified.
+     */
+    public byte[] toJson(Contact contact) throws IOException {
+        String uid = contact.getUid();
+        String version = contact.getVersion();
+        if (uid == null || version == null) {
+            misses.incrementAndGet();
+            return objectMapper.writeValueAsBytes(contact);
+        }
+
+        Fragment fragment = fragments.get(uid);
+        if (fragment != null && fragment.version.equals(version)) {
+            fragment.touch(misses.get());
+            hits.incrementAndGet();
+            return fragment.json;
+        }
+
+        long used = misses.incrementAndGet();
+        byte[] json = objectMapper.writeValueAsBytes(contact);
+        if (fragments.put(uid, new Fragment(version, json, used)) == null
+                && size.incrementAndGet() > maxSize) {
+            evict();
+        }
+        return json;
+    }
+
+    /**
+     * Writes contacts to stream as JSON array.
+     */
+    public void writeArray(Collection<Contact> contacts, OutputStream stream)
+            throws IOException {
+        stream.write('[');
+        boolean first = true;
+        for (Contact contact : contacts) {
+            if (!first) {
+                stream.write(',');
+            }
+            stream.write(toJson(contact));
+            first = false;
+        }
+        stream.write(']');
+    }
+
+    /**
+     * Forgets contact of removed employee.
+     */
+    @Override
+    public void onApplicationEvent(EmployeeChangedEvent event) {
+        if (event.isRemoved()) {
+            remove(event.getUid(), fragments.get(event.getUid()));
+        }
+    }
+
+    /**
+     * Forgets all contacts.
+     */
+    @ManagedOperation(description = "Forgets all contacts.")
+    public void clear() {
+        LOGGER.debug("Forget all serialized contacts.");
+        for (Map.Entry<String, Fragment> entry : fragments.entrySet()) {
+            remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of contacts taken from cache.
+     */
+    @ManagedAttribute(description = "Contacts taken from cache.")
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of contacts that were serialized.
+     */
+    @ManagedAttribute(description = "Contacts serialized to JSON.")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of remembered contacts.
+     */
+    @ManagedAttribute(description = "Remembered contacts.")
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the maximum number of remembered contacts.
+     */
+    @ManagedAttribute(description = "Maximum number of remembered contacts.")
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Forgets the least recently used tenth of contacts, if no other thread
+     * does it.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long[] used = new long[size.get() + 16];
+            int count = 0;
+            for (Fragment fragment : fragments.values()) {
+                if (count == used.length) {
+                    break;
+                }
+                used[count++] = fragment.used;
+            }
+            if (count == 0) {
+                return;
+            }
+            Arrays.sort(used, 0, count);
+            long threshold = used[Math.min(count - 1, count / 10)];
+
+            for (Map.Entry<String, Fragment> entry : fragments.entrySet()) {
+                if (entry.getValue().used <= threshold) {
+                    remove(entry.getKey(), entry.getValue());
+                }
+            }
+            LOGGER.debug("{} serialized contacts remained.", size.get());
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void remove(String uid, Fragment fragment) {
+        if (fragment != null && fragments.remove(uid, fragment)) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Contact of some version serialized to JSON.
+     */
+    private static class Fragment {
+
+        private final String version;
+        private final byte[] json;
+
+        private volatile long used;
+
+        public Fragment(String version, byte[] json, long used) {
+            this.version = version;
+            this.json = json;
+            this.used = used;
+        }
+
+        /**
+         * Remembers time of use, fragment is not written, if time is the same.
+         */
+        public void touch(long time) {
+            if (used != time) {
+                used = time;
+            }
+        }
+
+    }
+
+}
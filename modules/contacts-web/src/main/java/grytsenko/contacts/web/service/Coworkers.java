@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contacts of coworkers of employee and their version.
+ */
+public final class Coworkers {
+
+    private final LocationContacts location;
+    private final String employeeUid;
+
+    Coworkers(LocationContacts location, String employeeUid) {
+        this.location = location;
+        this.employeeUid = employeeUid;
+    }
+
+    /**
+     * Returns the version of coworkers, which is equal to their ETag without
+     * quotes.
+     */
+    public String getVersion() {
+        return location.getDigestWithout(employeeUid).toString();
+    }
+
+    /**
+     * Returns the list of contacts of coworkers sorted by full names.
+     */
+    public List<Contact> getContacts() {
+        List<Contact> contacts = location.getContacts();
+        List<Contact> coworkers = new ArrayList<Contact>(contacts.size());
+        for (Contact contact : contacts) {
+            if (!employeeUid.equals(contact.getUid())) {
+                coworkers.add(contact);
+            }
+        }
+        return coworkers;
+    }
+
+}
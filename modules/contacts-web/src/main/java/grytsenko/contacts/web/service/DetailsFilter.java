@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.web.data.EmployeeChangedEvent;
+import grytsenko.contacts.web.data.EmployeeDetailsRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Remembers employees, that have details in DB, so lookups of details for
+ * other employees are skipped.
+ * 
+ * <p>
+ * Identifiers are loaded from DB periodically and replaced on each reload of
+ * index, that loads all details anyway. When employee is changed, DB is
+ * checked for details of this employee. Until the first refresh, all lookups
+ * are passed to DB.
+ * 
+ * <p>
+ * Known identifiers are never changed in place, each change replaces them
+ * with changed copy under single lock. Changes, that are found while
+ * identifiers are loaded, are applied again to loaded identifiers, so they
+ * are not lost.
+ */
+@Service
+@ManagedResource(objectName = "contacts:name=detailsFilter",
+        description = "Employees that have details.")
+public class DetailsFilter implements ApplicationListener<EmployeeChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(DetailsFilter.class);
+
+    @Autowired
+    EmployeeDetailsRepository employeesDetailsRepository;
+
+    private volatile Set<String> uids;
+
+    private final Object lock = new Object();
+    private long changes;
+    private long loadedSince;
+    private final Map<String, Change> recent = new HashMap<String, Change>();
+
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public DetailsFilter() {
+    }
+
+    /**
+     * Checks that employee may have details.
+     * 
+     * @return <code>false</code> if employee has no details for sure,
+     *         <code>true</code> otherwise.
+     */
+    public boolean mayHaveDetails(String uid) {
+        Set<String> known = uids;
+        if (known != null && !known.contains(uid)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+
+        passed.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Selects employees, that may have details.
+     * 
+     * @return the list of identifiers in the same order.
+     */
+    public List<String> filter(Collection<String> uids) {
+        List<String> filtered = new ArrayList<String>(uids.size());
+        for (String uid : uids) {
+            if (mayHaveDetails(uid)) {
+                filtered.add(uid);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Marks start of loading of employees, that have details.
+     * 
+     * @return the mark to pass to {@link #update(Collection, long)}.
+     */
+    public long startLoading() {
+        synchronized (lock) {
+            return changes;
+        }
+    }
+
+    /**
+     * Replaces the known employees, that have details.
+     * 
+     * <p>
+     * Changes found since start of loading are applied to loaded identifiers.
+     * If identifiers were loaded before the known ones, then they are
+     * ignored.
+     * 
+     * @param uids
+     *            the identifiers of all employees, that have details.
+     * @param since
+     *            the mark returned by {@link #startLoading()} before loading.
+     */
+    public void update(Collection<String> uids, long since) {
+        synchronized (lock) {
+            if (this.uids != null && since < loadedSince) {
+                LOGGER.debug("Skip outdated employees that have details.");
+                return;
+            }
+
+            Set<String> updated = new HashSet<String>(uids);
+            Iterator<Change> iterator = recent.values().iterator();
+            while (iterator.hasNext()) {
+                Change change = iterator.next();
+                if (change.number > since) {
+                    change.applyTo(updated);
+                } else {
+                    iterator.remove();
+                }
+            }
+
+            this.uids = updated;
+            loadedSince = since;
+            LOGGER.debug("{} employees have details.", updated.size());
+        }
+    }
+
+    /**
+     * Replaces the known employees, that have details, with employees found in
+     * DB.
+     * 
+     * <p>
+     * Only identifiers are loaded, so rows added directly to DB are seen soon
+     * without reload of index.
+     */
+    public void refresh() {
+        long since = startLoading();
+        try {
+            update(employeesDetailsRepository.findAllUids(), since);
+        } catch (DataAccessException exception) {
+            LOGGER.warn("Could not refresh employees that have details.",
+                    exception);
+        }
+    }
+
+    /**
+     * Checks details of changed employee.
+     * 
+     * <p>
+     * DB is checked before lock is taken.
+     */
+    @Override
+    public void onApplicationEvent(EmployeeChangedEvent event) {
+        String uid = event.getUid();
+
+        boolean hasDetails = false;
+        if (!event.isRemoved()) {
+            try {
+                hasDetails = employeesDetailsRepository.exists(uid);
+            } catch (DataAccessException exception) {
+                LOGGER.warn("Could not check details of {}.", uid, exception);
+                hasDetails = true;
+            }
+        }
+
+        synchronized (lock) {
+            Change change = new Change(++changes, uid, hasDetails);
+            recent.put(uid, change);
+
+            Set<String> known = uids;
+            if (known != null) {
+                Set<String> changed = new HashSet<String>(known);
+                change.applyTo(changed);
+                uids = changed;
+            }
+        }
+    }
+
+    /**
+     * Forgets the known employees, so all lookups are passed to DB until the
+     * next refresh.
+     */
+    @ManagedOperation(description = "Passes all lookups until next refresh.")
+    public void clear() {
+        LOGGER.debug("Forget employees that have details.");
+        synchronized (lock) {
+            uids = null;
+        }
+    }
+
+    /**
+     * Returns the number of lookups passed to DB.
+     */
+    @ManagedAttribute(description = "Lookups passed to DB.")
+    public long getPassed() {
+        return passed.get();
+    }
+
+    /**
+     * Returns the number of skipped lookups.
+     */
+    @ManagedAttribute(description = "Lookups skipped.")
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Returns the number of employees, that have details, or -1 if they are
+     * not known yet.
+     */
+    @ManagedAttribute(description = "Employees that have details.")
+    public int getSize() {
+        Set<String> known = uids;
+        return known != null ? known.size() : -1;
+    }
+
+    /**
+     * Change of employee, that is numbered in order of changes.
+     */
+    private static class Change {
+
+        private final long number;
+        private final String uid;
+        private final boolean hasDetails;
+
+        public Change(long number, String uid, boolean hasDetails) {
+            this.number = number;
+            this.uid = uid;
+            this.hasDetails = hasDetails;
+        }
+
+        public void applyTo(Set<String> uids) {
+            if (hasDetails) {
+                uids.add(uid);
+            } else {
+                uids.remove(uid);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,556 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeChangeTracker;
+import grytsenko.contacts.web.data.EmployeeChangedEvent;
+import grytsenko.contacts.web.data.EmployeeDetails;
+import grytsenko.contacts.web.data.EmployeeDetailsRepository;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.EmployeeRecordRepository;
+import grytsenko.contacts.web.data.Versions;
+import grytsenko.contacts.web.data.mapper.ContactMapper;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Searches contacts of all employees by prefixes of words from names, mail
+ * and position.
+ * 
+ * <p>
+ * Index is kept in memory. All employees and details are loaded by the first
+ * refresh and reloaded rarely to drop removed employees, other refreshes find
+ * only employees modified since the latest known version. Only contacts with
+ * changed versions are indexed again. Reloaded index is built aside and
+ * replaces the current one. If changes of employees are tracked,
+ * then changed contacts are indexed as soon as changes are found.
+ */
+@Service
+public class IndexService implements
+        ApplicationListener<EmployeeChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(IndexService.class);
+
+    /**
+     * The maximum number of contacts in result of search.
+     */
+    public static final int MAX_LIMIT = 50;
+
+    /**
+     * The maximum number of identifiers in single query for details.
+     */
+    private static final int DETAILS_CHUNK_SIZE = 500;
+
+    private static final Pattern SEPARATORS = Pattern
+            .compile("[^\\p{L}\\p{Nd}]+");
+
+    @Autowired
+    EmployeeRecordRepository employeesRepository;
+    @Autowired
+    EmployeeDetailsRepository employeesDetailsRepository;
+
+    @Autowired
+    EmployeeChangeTracker changeTracker;
+    @Autowired
+    DetailsFilter detailsFilter;
+
+    @Value("#{ldapProperties['ldap.index.reload']}")
+    long reloadPeriod;
+
+    private final Collator collator = Collator.getInstance();
+
+    private volatile Index index = new Index();
+
+    private final Object changesLock = new Object();
+    private Map<String, IndexEntry> pendingChanges;
+
+    private String version;
+    private long reloadedAt;
+
+    /**
+     * Finds contacts, where each word of query is the prefix of some word.
+     * 
+     * <p>
+     * Contacts with whole words are returned first, then contacts are ordered
+     * by full names.
+     * 
+     * @param query
+     *            the words to search.
+     * @param limit
+     *            the maximum number of contacts to return.
+     * 
+     * @return the found contacts.
+     */
+    public List<Contact> search(String query, int limit) {
+        Set<String> words = split(query);
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        LOGGER.debug("Search contacts by {}.", words);
+
+        List<Match> matches = index.find(words);
+        Collections.sort(matches);
+
+        int found = Math.min(Math.min(limit, MAX_LIMIT), matches.size());
+        List<Contact> contacts = new ArrayList<Contact>(found);
+        for (Match match : matches.subList(0, found)) {
+            contacts.add(match.entry.contact);
+        }
+        LOGGER.debug("Found {} of {} contacts.", contacts.size(),
+                matches.size());
+
+        return contacts;
+    }
+
+    /**
+     * Refreshes index with changed contacts of employees.
+     * 
+     * <p>
+     * The first refresh and refreshes after reload period load all employees
+     * and details. New index is built aside and replaces the current one, so
+     * searches and changes of employees are not blocked by reload. Contacts
+     * with same versions are not indexed again, employees with details are
+     * passed to {@link DetailsFilter}.
+     * 
+     * <p>
+     * Other refreshes index only employees modified since the latest known
+     * version. If changes of employees are tracked, then such refreshes are
+     * skipped, because changed contacts are already indexed.
+     */
+    public synchronized void refresh() {
+        if (reloadedAt == 0
+                || System.currentTimeMillis() - reloadedAt > reloadPeriod) {
+            reload();
+            return;
+        }
+
+        if (changeTracker.isEnabled()) {
+            return;
+        }
+
+        update();
+    }
+
+    /**
+     * Indexes contact of changed employee again, so index is updated before
+     * its next refresh.
+     * 
+     * <p>
+     * Details are found before index is locked. If index is reloaded at this
+     * moment, then change is also applied to new index.
+     */
+    @Override
+    public void onApplicationEvent(EmployeeChangedEvent event) {
+        String uid = event.getUid();
+
+        IndexEntry changed = null;
+        if (!event.isRemoved()) {
+            EmployeeDetails details;
+            try {
+                details = employeesDetailsRepository.findOne(uid);
+            } catch (DataAccessException exception) {
+                LOGGER.warn("Could not index {}.", uid, exception);
+                return;
+            }
+
+            changed = new IndexEntry(ContactMapper.map(event.getRecord(),
+                    details), collator);
+        }
+
+        synchronized (changesLock) {
+            if (pendingChanges != null) {
+                pendingChanges.put(uid, changed);
+            }
+            index.apply(Collections.singletonMap(uid, changed));
+        }
+        LOGGER.debug("Indexed changes of {}.", uid);
+    }
+
+    private void reload() {
+        synchronized (changesLock) {
+            pendingChanges = new HashMap<String, IndexEntry>();
+        }
+
+        try {
+            Index reloaded = build();
+            if (reloaded == null) {
+                return;
+            }
+
+            synchronized (changesLock) {
+                reloaded.apply(pendingChanges);
+                index = reloaded;
+            }
+        } finally {
+            synchronized (changesLock) {
+                pendingChanges = null;
+            }
+        }
+    }
+
+    private Index build() {
+        long detailsSince = detailsFilter.startLoading();
+        Collection<EmployeeRecord> records;
+        List<EmployeeDetails> details;
+        try {
+            records = employeesRepository.findAll();
+            details = employeesDetailsRepository.findAll();
+        } catch (org.springframework.ldap.NamingException exception) {
+            LOGGER.warn("Could not reload index.", exception);
+            return null;
+        } catch (DataAccessException exception) {
+            LOGGER.warn("Could not reload index.", exception);
+            return null;
+        }
+
+        Map<String, EmployeeDetails> detailsByUid = new HashMap<String, EmployeeDetails>();
+        for (EmployeeDetails found : details) {
+            detailsByUid.put(found.getUid(), found);
+        }
+        detailsFilter.update(detailsByUid.keySet(), detailsSince);
+
+        Index current = index;
+        Index reloaded = new Index();
+        int changed = 0;
+        for (EmployeeRecord record : records) {
+            Contact contact = ContactMapper.map(record,
+                    detailsByUid.get(record.getUid()));
+
+            IndexEntry entry = current.get(contact.getUid());
+            if (entry == null || !entry.hasVersion(contact.getVersion())) {
+                entry = new IndexEntry(contact, collator);
+                changed++;
+            }
+            reloaded.add(entry);
+        }
+
+        version = Versions.findLatest(records);
+        reloadedAt = System.currentTimeMillis();
+
+        LOGGER.debug("Reloaded {} contacts, indexed {} contacts.",
+                records.size(), changed);
+        return reloaded;
+    }
+
+    private void update() {
+        List<EmployeeRecord> records;
+        Map<String, EmployeeDetails> detailsByUid = new HashMap<String, EmployeeDetails>();
+        try {
+            records = employeesRepository.findModifiedSince(version);
+
+            List<String> uids = new ArrayList<String>(records.size());
+            for (EmployeeRecord record : records) {
+                uids.add(record.getUid());
+            }
+            for (int from = 0; from < uids.size(); from += DETAILS_CHUNK_SIZE) {
+                int to = Math.min(from + DETAILS_CHUNK_SIZE, uids.size());
+                for (EmployeeDetails found : employeesDetailsRepository
+                        .findByUidIn(uids.subList(from, to))) {
+                    detailsByUid.put(found.getUid(), found);
+                }
+            }
+        } catch (org.springframework.ldap.NamingException exception) {
+            LOGGER.warn("Could not update index.", exception);
+            return;
+        } catch (DataAccessException exception) {
+            LOGGER.warn("Could not update index.", exception);
+            return;
+        }
+
+        Index current = index;
+        Map<String, IndexEntry> changed = new HashMap<String, IndexEntry>();
+        for (EmployeeRecord record : records) {
+            Contact contact = ContactMapper.map(record,
+                    detailsByUid.get(record.getUid()));
+
+            IndexEntry existing = current.get(contact.getUid());
+            if (existing == null || !existing.hasVersion(contact.getVersion())) {
+                changed.put(contact.getUid(), new IndexEntry(contact, collator));
+            }
+        }
+
+        String latest = Versions.findLatest(records);
+        if (Versions.isLater(latest, version)) {
+            version = latest;
+        }
+
+        if (changed.isEmpty()) {
+            LOGGER.debug("Index is up to date.");
+            return;
+        }
+
+        synchronized (changesLock) {
+            index.apply(changed);
+        }
+        LOGGER.debug("Indexed {} contacts.", changed.size());
+    }
+
+    /**
+     * Splits text into lower-case words.
+     */
+    private static Set<String> split(String... texts) {
+        Set<String> words = new LinkedHashSet<String>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+
+            for (String word : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+                if (word.length() > 0) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Contacts and words, which are found in them.
+     * 
+     * <p>
+     * Index is built without lock until it is published, then it is changed
+     * only under its lock.
+     */
+    private static class Index {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final NavigableMap<String, Set<String>> uidsByWord = new TreeMap<String, Set<String>>();
+        private final Map<String, IndexEntry> entries = new HashMap<String, IndexEntry>();
+
+        /**
+         * Finds contacts, which match all words.
+         */
+        public List<Match> find(Set<String> words) {
+            String longest = null;
+            for (String word : words) {
+                if (longest == null || word.length() > longest.length()) {
+                    longest = word;
+                }
+            }
+
+            List<Match> matches = new ArrayList<Match>();
+            lock.readLock().lock();
+            try {
+                Set<String> candidates = new HashSet<String>();
+                for (Set<String> uids : uidsByWord.subMap(longest, true,
+                        longest + Character.MAX_VALUE, true).values()) {
+                    candidates.addAll(uids);
+                }
+
+                for (String uid : candidates) {
+                    IndexEntry entry = entries.get(uid);
+                    int score = entry.score(words);
+                    if (score > 0) {
+                        matches.add(new Match(entry, score));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return matches;
+        }
+
+        public IndexEntry get(String uid) {
+            lock.readLock().lock();
+            try {
+                return entries.get(uid);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Replaces entries of employees, <code>null</code> entry removes
+         * employee.
+         */
+        public void apply(Map<String, IndexEntry> changes) {
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<String, IndexEntry> change : changes
+                        .entrySet()) {
+                    remove(entries.get(change.getKey()));
+                    if (change.getValue() != null) {
+                        add(change.getValue());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void add(IndexEntry entry) {
+            String uid = entry.contact.getUid();
+            entries.put(uid, entry);
+
+            for (String word : entry.words) {
+                Set<String> uids = uidsByWord.get(word);
+                if (uids == null) {
+                    uids = new HashSet<String>();
+                    uidsByWord.put(word, uids);
+                }
+                uids.add(uid);
+            }
+        }
+
+        private void remove(IndexEntry entry) {
+            if (entry == null) {
+                return;
+            }
+
+            String uid = entry.contact.getUid();
+            entries.remove(uid);
+
+            for (String word : entry.words) {
+                Set<String> uids = uidsByWord.get(word);
+                if (uids == null) {
+                    continue;
+                }
+
+                uids.remove(uid);
+                if (uids.isEmpty()) {
+                    uidsByWord.remove(word);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Indexed contact and its words.
+     */
+    private static class IndexEntry {
+
+        private final Contact contact;
+        private final String[] words;
+
+        private final CollationKey lastName;
+        private final CollationKey firstName;
+
+        public IndexEntry(Contact contact, Collator collator) {
+            this.contact = contact;
+
+            Set<String> found = split(contact.getFirstName(),
+                    contact.getLastName(), contact.getMail(),
+                    contact.getPosition());
+            if (contact.getMail() != null) {
+                found.add(contact.getMail().toLowerCase(Locale.ROOT));
+            }
+            this.words = found.toArray(new String[found.size()]);
+
+            this.lastName = collator.getCollationKey(asText(contact
+                    .getLastName()));
+            this.firstName = collator.getCollationKey(asText(contact
+                    .getFirstName()));
+        }
+
+        public boolean hasVersion(String version) {
+            String current = contact.getVersion();
+            return current != null ? current.equals(version) : version == null;
+        }
+
+        /**
+         * Counts 2 points for each whole word and 1 point for each prefix.
+         * 
+         * @return the score or 0 if some word is not matched.
+         */
+        public int score(Set<String> queryWords) {
+            int score = 0;
+            for (String queryWord : queryWords) {
+                int best = 0;
+                for (String word : words) {
+                    if (word.equals(queryWord)) {
+                        best = 2;
+                        break;
+                    }
+                    if (word.startsWith(queryWord)) {
+                        best = 1;
+                    }
+                }
+
+                if (best == 0) {
+                    return 0;
+                }
+                score += best;
+            }
+            return score;
+        }
+
+        private static String asText(String name) {
+            return name != null ? name.trim() : "";
+        }
+
+    }
+
+    /**
+     * Contact found by query.
+     */
+    private static class Match implements Comparable<Match> {
+
+        private final IndexEntry entry;
+        private final int score;
+
+        public Match(IndexEntry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            if (score != other.score) {
+                return score > other.score ? -1 : 1;
+            }
+
+            int lastNames = entry.lastName.compareTo(other.entry.lastName);
+            if (lastNames != 0) {
+                return lastNames;
+            }
+
+            return entry.firstName.compareTo(other.entry.firstName);
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.util.FullNameCollator;
+import grytsenko.contacts.web.util.VersionDigest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contacts of all employees from location sorted by full names and versions
+ * of these contacts.
+ * 
+ * <p>
+ * Instances are not modified, so they are shared by requests without locks.
+ * Changes of contacts create new instances.
+ */
+final class LocationContacts {
+
+    private final String location;
+    private final List<Contact> contacts;
+    private final Map<String, String> versions;
+    private final VersionDigest digest;
+    private final long loadedAt;
+
+    /**
+     * Sorts contacts loaded from location.
+     * 
+     * @param location
+     *            the name of location.
+     * @param contacts
+     *            the contacts of all employees from location.
+     * @param locale
+     *            the locale of names.
+     */
+    public static LocationContacts create(String location,
+            Collection<Contact> contacts, Locale locale) {
+        return new LocationContacts(location, FullNameCollator.sort(contacts,
+                locale), System.currentTimeMillis());
+    }
+
+    private LocationContacts(String location, List<Contact> sorted,
+            long loadedAt) {
+        this.location = location;
+        this.contacts = Collections.unmodifiableList(sorted);
+        this.versions = new HashMap<String, String>(sorted.size() * 2);
+        this.digest = new VersionDigest();
+        for (Contact contact : sorted) {
+            versions.put(contact.getUid(), contact.getVersion());
+            digest.add(contact.getUid(), contact.getVersion());
+        }
+        this.loadedAt = loadedAt;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Returns the unmodifiable list of contacts sorted by full names.
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Returns the digest of versions of all contacts.
+     */
+    public VersionDigest getDigest() {
+        return digest.copy();
+    }
+
+    /**
+     * Returns the digest of versions of all contacts except contact of
+     * employee, i.e. the version of coworkers of employee.
+     */
+    public VersionDigest getDigestWithout(String uid) {
+        VersionDigest result = digest.copy();
+        if (versions.containsKey(uid)) {
+            result.remove(uid, versions.get(uid));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the version of contact or <code>null</code> if employee is not
+     * from this location.
+     */
+    public String getVersion(String uid) {
+        return versions.get(uid);
+    }
+
+    /**
+     * Checks that employee is from this location.
+     */
+    public boolean contains(String uid) {
+        return versions.containsKey(uid);
+    }
+
+    /**
+     * Returns the identifiers of all employees from location.
+     */
+    public Set<String> getUids() {
+        return Collections.unmodifiableSet(versions.keySet());
+    }
+
+    /**
+     * Checks that contacts were loaded earlier than the given period ago.
+     */
+    public boolean isOlderThan(long period) {
+        return System.currentTimeMillis() - loadedAt > period;
+    }
+
+    /**
+     * Creates contacts, where contact of employee is replaced.
+     * 
+     * <p>
+     * Time of loading is not changed, so contacts are loaded again when they
+     * expire.
+     * 
+     * @param uid
+     *            the unique identifier of employee.
+     * @param contact
+     *            the new contact of employee or <code>null</code> if employee
+     *            left location.
+     * @param locale
+     *            the locale of names.
+     */
+    public LocationContacts update(String uid, Contact contact, Locale locale) {
+        List<Contact> updated = new ArrayList<Contact>(contacts.size() + 1);
+        for (Contact existing : contacts) {
+            if (!uid.equals(existing.getUid())) {
+                updated.add(existing);
+            }
+        }
+        if (contact != null) {
+            updated.add(contact);
+        }
+
+        return new LocationContacts(location, FullNameCollator.sort(updated,
+                locale), loadedAt);
+    }
+
+}
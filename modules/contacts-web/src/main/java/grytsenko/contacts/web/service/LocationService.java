@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeChangeTracker;
+import grytsenko.contacts.web.data.EmployeeChangedEvent;
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.util.SingleFlight;
+import grytsenko.contacts.web.util.VersionDigest;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps contacts of each location sorted by full names.
+ * 
+ * <p>
+ * Contacts are loaded from DS and DB only when location is requested for the
+ * first time or when its contacts expire, concurrent loads of the same
+ * location are shared. Until then, the same list is shared by all requests.
+ * 
+ * <p>
+ * If changes of employees are tracked, then contact of changed employee is
+ * replaced as soon as change is found, and contacts expire rarely, so
+ * changes of details are found. Otherwise contacts expire often.
+ * 
+ * <p>
+ * Several recent revisions of contacts are remembered for each location, so
+ * changes since any version, that was sent to client, are found without
+ * loading of contacts.
+ */
+@Service
+@ManagedResource(objectName = "contacts:name=locations",
+        description = "Contacts of locations.")
+public class LocationService implements
+        ApplicationListener<EmployeeChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LocationService.class);
+
+    /**
+     * The maximum number of revisions, that are remembered for each location.
+     */
+    private static final int REVISIONS_LIMIT = 16;
+
+    @Autowired
+    SearchService searchService;
+    @Autowired
+    EmployeeChangeTracker changeTracker;
+
+    @Value("#{ldapProperties['ldap.locations.ttl']}")
+    long ttl;
+    @Value("#{ldapProperties['ldap.locations.reload']}")
+    long reloadPeriod;
+
+    private final Locale locale = Locale.getDefault();
+
+    private final ConcurrentMap<String, LocationContacts> locations = new ConcurrentHashMap<String, LocationContacts>();
+    private final SingleFlight<String, LocationContacts> loads = new SingleFlight<String, LocationContacts>();
+
+    /**
+     * Counts changes, so loads, that were started before change of location,
+     * do not replace contacts updated by this change.
+     */
+    private long generation;
+    private final Map<String, Long> changedAt = new HashMap<String, Long>();
+
+    private final Map<String, LocationRevisions> revisions = new HashMap<String, LocationRevisions>();
+
+    /**
+     * Finds contacts of coworkers of employee.
+     * 
+     * @param employee
+     *            the record of employee.
+     * 
+     * @return the list of found contacts sorted by full names.
+     */
+    public List<Contact> findCoworkers(EmployeeRecord employee) {
+        return findCoworkersWithVersion(employee).getContacts();
+    }
+
+    /**
+     * Finds contacts of coworkers of employee and their version.
+     * 
+     * <p>
+     * Version is taken from the same contacts, so it is not computed again
+     * and always matches contacts.
+     * 
+     * @param employee
+     *            the record of employee.
+     * 
+     * @return the found coworkers.
+     */
+    public Coworkers findCoworkersWithVersion(EmployeeRecord employee) {
+        return new Coworkers(findLocation(employee), employee.getUid());
+    }
+
+    /**
+     * Finds contacts of all employees from location of employee.
+     * 
+     * @param employee
+     *            the record of employee.
+     * 
+     * @return the unmodifiable list of found contacts sorted by full names,
+     *         including contact of employee.
+     */
+    public List<Contact> findLocationContacts(EmployeeRecord employee) {
+        return findLocation(employee).getContacts();
+    }
+
+    /**
+     * Replaces contact of changed employee in contacts of its old and new
+     * locations, if they are loaded.
+     * 
+     * <p>
+     * If contact can not be created, then contacts of both locations are
+     * loaded again on next request.
+     */
+    @Override
+    public void onApplicationEvent(EmployeeChangedEvent event) {
+        Contact contact = null;
+        if (!event.isRemoved()) {
+            try {
+                contact = searchService.findEmployee(event.getRecord());
+            } catch (DataAccessException exception) {
+                LOGGER.warn("Could not update contact of {}.",
+                        event.getUid(), exception);
+                apply(event, null, true);
+                return;
+            }
+        }
+
+        apply(event, contact, false);
+    }
+
+    /**
+     * Forgets contacts of all locations, so they are loaded again on next
+     * request.
+     */
+    @ManagedOperation(description = "Loads all locations on next request.")
+    public synchronized void clear() {
+        LOGGER.debug("Forget contacts of all locations.");
+        ++generation;
+        for (String location : locations.keySet()) {
+            changedAt.put(location, generation);
+        }
+        locations.clear();
+    }
+
+    /**
+     * Returns the number of loaded locations.
+     */
+    @ManagedAttribute(description = "Loaded locations.")
+    public int getSize() {
+        return locations.size();
+    }
+
+    /**
+     * Returns the number of loads of locations.
+     */
+    @ManagedAttribute(description = "Loads of locations.")
+    public long getLoads() {
+        return loads.getCalls();
+    }
+
+    /**
+     * Returns the number of loads of locations, that used result of
+     * concurrent load.
+     */
+    @ManagedAttribute(description = "Loads of locations collapsed.")
+    public long getLoadsCollapsed() {
+        return loads.getCollapsed();
+    }
+
+    /**
+     * Finds contacts of location of employee, contacts are loaded if they
+     * expired.
+     */
+    LocationContacts findLocation(final EmployeeRecord employee) {
+        if (employee == null) {
+            throw new IllegalArgumentException("Employee not defined.");
+        }
+
+        String location = employee.getLocation();
+        if (location == null) {
+            return LocationContacts.create(null,
+                    searchService.findLocationContacts(employee), locale);
+        }
+
+        LocationContacts cached = locations.get(location);
+        if (cached != null && !cached.isOlderThan(getExpirationPeriod())) {
+            LOGGER.debug("Contacts from {} are loaded.", location);
+            return cached;
+        }
+
+        return loads.execute(location, new Callable<LocationContacts>() {
+            @Override
+            public LocationContacts call() {
+                return load(employee);
+            }
+        });
+    }
+
+    /**
+     * Finds recent revision of location, where employee had coworkers of the
+     * given version.
+     * 
+     * @return the found revision or <code>null</code> if version is unknown.
+     */
+    synchronized LocationContacts findRevision(String location,
+            String version, String employeeUid) {
+        LocationRevisions locationRevisions = revisions.get(location);
+        if (locationRevisions == null) {
+            return null;
+        }
+
+        return locationRevisions.find(version, employeeUid);
+    }
+
+    private long getExpirationPeriod() {
+        return changeTracker.isEnabled() ? reloadPeriod : ttl;
+    }
+
+    private LocationContacts load(EmployeeRecord employee) {
+        String location = employee.getLocation();
+        long started = getGeneration();
+
+        List<Contact> found = searchService.findLocationContacts(employee);
+        LOGGER.debug("Sort {} contacts from {}.", found.size(), location);
+        return store(LocationContacts.create(location, found, locale),
+                started);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Remembers loaded contacts, unless location was changed while contacts
+     * were loaded.
+     */
+    private synchronized LocationContacts store(LocationContacts loaded,
+            long started) {
+        String location = loaded.getLocation();
+        LocationContacts cached = locations.get(location);
+
+        Long changed = changedAt.get(location);
+        if (changed != null && changed > started) {
+            LOGGER.debug("Contacts from {} changed while loaded.", location);
+            return cached != null ? cached : loaded;
+        }
+
+        locations.put(location, loaded);
+        remember(loaded);
+        return loaded;
+    }
+
+    private synchronized void apply(EmployeeChangedEvent event,
+            Contact contact, boolean failed) {
+        ++generation;
+
+        String uid = event.getUid();
+        String oldLocation = event.getOldLocation();
+        String newLocation = event.getNewLocation();
+        if (oldLocation != null && !oldLocation.equals(newLocation)) {
+            update(oldLocation, uid, null, failed);
+        }
+        if (newLocation != null) {
+            update(newLocation, uid, contact, failed);
+        }
+    }
+
+    private void update(String location, String uid, Contact contact,
+            boolean failed) {
+        changedAt.put(location, generation);
+
+        LocationContacts cached = locations.get(location);
+        if (cached == null) {
+            return;
+        }
+
+        if (failed) {
+            locations.remove(location);
+            return;
+        }
+
+        LOGGER.debug("Update contact of {} in {}.", uid, location);
+        LocationContacts updated = cached.update(uid, contact, locale);
+        locations.put(location, updated);
+        remember(updated);
+    }
+
+    private void remember(LocationContacts revision) {
+        String location = revision.getLocation();
+        LocationRevisions locationRevisions = revisions.get(location);
+        if (locationRevisions == null) {
+            locationRevisions = new LocationRevisions();
+            revisions.put(location, locationRevisions);
+        }
+
+        VersionDigest digest = revision.getDigest();
+        locationRevisions.remove(digest);
+        locationRevisions.put(digest, revision);
+    }
+
+    /**
+     * Recent revisions of location, the oldest revisions are forgotten.
+     */
+    private static class LocationRevisions extends
+            LinkedHashMap<VersionDigest, LocationContacts> {
+
+        private static final long serialVersionUID = 4316298807476398352L;
+
+        /**
+         * Finds revision, where employee had coworkers of given version.
+         */
+        public LocationContacts find(String version, String employeeUid) {
+            for (LocationContacts revision : values()) {
+                String digest = revision.getDigestWithout(employeeUid)
+                        .toString();
+                if (digest.equals(version)) {
+                    return revision;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<VersionDigest, LocationContacts> eldest) {
+            return size() > REVISIONS_LIMIT;
+        }
+
+    }
+
+}
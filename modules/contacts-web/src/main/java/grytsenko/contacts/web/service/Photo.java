@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import java.io.Serializable;
+
+/**
+ * Resized photo of employee.
+ */
+public final class Photo implements Serializable {
+
+    private static final long serialVersionUID = 4617069930582475390L;
+
+    private final byte[] data;
+    private final String contentType;
+    private final String etag;
+    private final long lastModified;
+
+    public Photo(byte[] data, String contentType, String etag,
+            long lastModified) {
+        this.data = data;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the encoded image, it must not be modified.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the type of image.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the tag, that is changed when photo is changed.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Returns the time of the last modification of photo.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+}
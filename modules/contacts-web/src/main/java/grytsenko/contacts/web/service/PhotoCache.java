@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Bounded cache of resized photos in memory and on disk.
+ * 
+ * <p>
+ * The least recently used photos are removed from memory first. Files of the
+ * oldest photos are removed from disk, when total size of files exceeds
+ * limit.
+ * 
+ * <p>
+ * Only access to memory is synchronized, files are read and written without
+ * locks. Photo is written to temporary file, that is renamed when it is
+ * complete, so readers never see partial files.
+ */
+final class PhotoCache {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(PhotoCache.class);
+
+    private static final String SUFFIX = ".photo";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final long memoryLimit;
+    private final long diskLimit;
+
+    private final Map<String, byte[]> memory = new LinkedHashMap<String, byte[]>(
+            16, 0.75f, true);
+    private long memorySize;
+
+    private final AtomicLong diskSize = new AtomicLong();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    /**
+     * Creates cache.
+     * 
+     * @param dir
+     *            the directory for files.
+     * @param memoryLimit
+     *            the maximum size of photos in memory, bytes.
+     * @param diskLimit
+     *            the maximum size of files, bytes.
+     */
+    public PhotoCache(File dir, long memoryLimit, long diskLimit) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("Invalid directory.");
+        }
+
+        this.dir = dir;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+
+        deleteTempFiles();
+        long found = 0;
+        for (File file : listFiles()) {
+            found += file.length();
+        }
+        diskSize.set(found);
+        LOGGER.debug("Found {} bytes of photos in {}.", found, dir);
+    }
+
+    /**
+     * Finds photo.
+     * 
+     * @param key
+     *            the key, that contains only letters, digits and dashes.
+     * 
+     * @return the found photo or <code>null</code> if photo not found.
+     */
+    public byte[] get(String key) {
+        byte[] data;
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+        if (data != null) {
+            return data;
+        }
+
+        File file = new File(dir, key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            InputStream stream = new FileInputStream(file);
+            data = FileCopyUtils.copyToByteArray(stream);
+        } catch (FileNotFoundException exception) {
+            LOGGER.debug("Photo {} removed from disk.", key);
+            return null;
+        } catch (IOException exception) {
+            LOGGER.warn("Could not read photo from " + file + ".", exception);
+            return null;
+        }
+
+        file.setLastModified(System.currentTimeMillis());
+        putToMemory(key, data);
+        return data;
+    }
+
+    /**
+     * Remembers photo.
+     */
+    public void put(String key, byte[] data) {
+        putToMemory(key, data);
+
+        File file = new File(dir, key + SUFFIX);
+        if (file.isFile()) {
+            return;
+        }
+
+        File temp = null;
+        try {
+            temp = File.createTempFile(key, TEMP_SUFFIX, dir);
+            OutputStream stream = new FileOutputStream(temp);
+            FileCopyUtils.copy(data, stream);
+        } catch (IOException exception) {
+            LOGGER.warn("Could not write photo to " + file + ".", exception);
+            if (temp != null) {
+                temp.delete();
+            }
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            LOGGER.debug("Photo {} already written to disk.", key);
+            temp.delete();
+            return;
+        }
+
+        if (diskSize.addAndGet(data.length) > diskLimit) {
+            trimDisk();
+        }
+    }
+
+    private void putToMemory(String key, byte[] data) {
+        synchronized (memory) {
+            byte[] previous = memory.put(key, data);
+            if (previous != null) {
+                memorySize -= previous.length;
+            }
+            memorySize += data.length;
+
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memorySize > memoryLimit && eldest.hasNext()) {
+                memorySize -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest files, until total size is less than limit.
+     * 
+     * <p>
+     * Only one thread trims files, other threads do not wait for it.
+     */
+    private void trimDisk() {
+        if (!trimming.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            File[] files = listFiles();
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File first, File second) {
+                    long firstModified = first.lastModified();
+                    long secondModified = second.lastModified();
+                    if (firstModified == secondModified) {
+                        return 0;
+                    }
+                    return firstModified < secondModified ? -1 : 1;
+                }
+            });
+
+            long size = 0;
+            for (File file : files) {
+                size += file.length();
+            }
+
+            for (int i = 0; i < files.length && size > diskLimit; ++i) {
+                long length = files[i].length();
+                if (files[i].delete()) {
+                    size -= length;
+                }
+            }
+            diskSize.set(size);
+            LOGGER.debug("Photos on disk trimmed to {} bytes.", size);
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    /**
+     * Removes temporary files, that were left after failures.
+     */
+    private void deleteTempFiles() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+}
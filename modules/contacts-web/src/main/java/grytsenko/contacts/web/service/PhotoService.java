@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.EmployeeRecordRepository;
+import grytsenko.contacts.web.util.SingleFlight;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Provides photos of employees resized to sizes of thumbnails.
+ * 
+ * <p>
+ * Photos are downloaded from their URLs, cropped to square and scaled down.
+ * Resized photos are cached by identifier of employee, version of record and
+ * size.
+ * 
+ * <p>
+ * URLs are taken from DS, so only HTTP and HTTPS URLs of allowed hosts are
+ * downloaded, if no hosts are allowed, then no photos are downloaded. Size of original photo and its dimensions are checked before
+ * it is decoded.
+ */
+@Service
+public class PhotoService implements InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(PhotoService.class);
+
+    /**
+     * The supported sizes of photos, requested size is rounded up.
+     */
+    private static final int[] SIZES = { 96, 256, 512 };
+
+    private static final String CONTENT_TYPE = "image/jpeg";
+    private static final String FORMAT = "jpg";
+
+    @Autowired
+    EmployeeRecordRepository employeesRepository;
+
+    @Value("#{appProperties['photos.cache.dir']}")
+    String cacheDir;
+    @Value("#{appProperties['photos.cache.memory']}")
+    long cacheMemoryLimit;
+    @Value("#{appProperties['photos.cache.disk']}")
+    long cacheDiskLimit;
+    @Value("#{appProperties['photos.timeout']}")
+    int timeout;
+    @Value("#{appProperties['photos.hosts']}")
+    String allowedHosts;
+    @Value("#{appProperties['photos.maxBytes']}")
+    int maxBytes;
+    @Value("#{appProperties['photos.maxSide']}")
+    int maxSide;
+
+    private PhotoCache cache;
+    private Set<String> hosts;
+
+    private final SingleFlight<String, byte[]> loads = new SingleFlight<String, byte[]>();
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        File dir = StringUtils.hasText(cacheDir) ? new File(cacheDir)
+                : new File(System.getProperty("java.io.tmpdir"),
+                        "contacts-photos");
+        cache = new PhotoCache(dir, cacheMemoryLimit, cacheDiskLimit);
+
+        hosts = new HashSet<String>();
+        for (String host : StringUtils
+                .commaDelimitedListToStringArray(allowedHosts)) {
+            if (StringUtils.hasText(host)) {
+                hosts.add(host.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        if (hosts.isEmpty()) {
+            LOGGER.warn("Hosts of photos not allowed, photos are not loaded.");
+        }
+    }
+
+    /**
+     * Finds photo of employee.
+     * 
+     * @param uid
+     *            the unique identifier of employee.
+     * @param size
+     *            the desired size of photo in pixels.
+     * 
+     * @return the found photo or <code>null</code> if employee has no photo
+     *         or URL of photo is not allowed.
+     * 
+     * @throws IOException
+     *             if photo could not be downloaded or has invalid format.
+     */
+    public Photo findPhoto(String uid, int size) throws IOException {
+        if (!StringUtils.hasLength(uid)) {
+            throw new IllegalArgumentException("UID not defined.");
+        }
+
+        EmployeeRecord employee = employeesRepository.findByUid(uid);
+        if (employee == null
+                || !StringUtils.hasText(employee.getPhotoUrl())) {
+            LOGGER.debug("Employee {} has no photo.", uid);
+            return null;
+        }
+
+        final URL photoUrl = toAllowedUrl(employee.getPhotoUrl());
+        if (photoUrl == null) {
+            LOGGER.debug("Photo of {} has not allowed URL.", uid);
+            return null;
+        }
+
+        final int photoSize = roundSize(size);
+        final String key = createKey(employee, photoSize);
+
+        byte[] data = cache.get(key);
+        if (data == null) {
+            try {
+                data = loads.execute(key, new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        byte[] resized = loadPhoto(photoUrl, photoSize);
+                        cache.put(key, resized);
+                        return resized;
+                    }
+                });
+            } catch (IllegalStateException exception) {
+                if (exception.getCause() instanceof IOException) {
+                    throw (IOException) exception.getCause();
+                }
+                throw exception;
+            }
+        }
+
+        return new Photo(data, CONTENT_TYPE, key,
+                getLastModified(employee.getVersion()));
+    }
+
+    /**
+     * Checks that photo can be downloaded from URL.
+     * 
+     * @return the URL or <code>null</code> if URL is not allowed.
+     */
+    private URL toAllowedUrl(String photoUrl) {
+        URL url;
+        try {
+            url = new URL(photoUrl);
+        } catch (MalformedURLException exception) {
+            return null;
+        }
+
+        String protocol = url.getProtocol().toLowerCase(Locale.ROOT);
+        if (!protocol.equals("http") && !protocol.equals("https")) {
+            return null;
+        }
+
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        if (!hosts.contains(host)) {
+            return null;
+        }
+
+        return url;
+    }
+
+    private byte[] loadPhoto(URL photoUrl, int size) throws IOException {
+        LOGGER.debug("Load photo from {}.", photoUrl);
+
+        URLConnection connection = photoUrl.openConnection();
+        if (!(connection instanceof HttpURLConnection)) {
+            throw new IOException("Unsupported URL of photo.");
+        }
+
+        HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        httpConnection.setInstanceFollowRedirects(false);
+        httpConnection.setConnectTimeout(timeout);
+        httpConnection.setReadTimeout(timeout);
+
+        int status = httpConnection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Photo not downloaded, status " + status
+                    + ".");
+        }
+        if (httpConnection.getContentLength() > maxBytes) {
+            throw new IOException("Photo is too big.");
+        }
+
+        BufferedImage original = decode(read(httpConnection.getInputStream()));
+
+        BufferedImage resized = resize(original, size);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (!ImageIO.write(resized, FORMAT, output)) {
+            throw new IOException("Photo could not be encoded.");
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Reads the whole stream, but not more than allowed number of bytes.
+     */
+    private byte[] read(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                if (output.size() + count > maxBytes) {
+                    throw new IOException("Photo is too big.");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Decodes image, if its dimensions do not exceed limit.
+     * 
+     * <p>
+     * Dimensions are read from header, so big images are not decoded.
+     */
+    private BufferedImage decode(byte[] data) throws IOException {
+        ImageInputStream input = ImageIO
+                .createImageInputStream(new ByteArrayInputStream(data));
+        if (input == null) {
+            throw new IOException("Invalid format of photo.");
+        }
+
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Invalid format of photo.");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width <= 0 || height <= 0 || width > maxSide
+                        || height > maxSide) {
+                    throw new IOException("Invalid size of photo: " + width
+                            + "x" + height + ".");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Crops central square of image and scales it down.
+     * 
+     * <p>
+     * Image is halved several times before the final scaling, so quality of
+     * small thumbnails is acceptable with bilinear interpolation.
+     */
+    private static BufferedImage resize(BufferedImage original, int size) {
+        int side = Math.min(original.getWidth(), original.getHeight());
+        int x = (original.getWidth() - side) / 2;
+        int y = (original.getHeight() - side) / 2;
+
+        BufferedImage current = draw(original, x, y, side, side, side);
+        while (side / 2 >= size) {
+            side /= 2;
+            current = draw(current, 0, 0, current.getWidth(),
+                    current.getHeight(), side);
+        }
+        if (side > size) {
+            current = draw(current, 0, 0, side, side, size);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int x, int y,
+            int width, int height, int size) {
+        BufferedImage target = new BufferedImage(size, size,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, size, size, x, y, x + width, y
+                    + height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static int roundSize(int size) {
+        for (int supported : SIZES) {
+            if (size <= supported) {
+                return supported;
+            }
+        }
+        return SIZES[SIZES.length - 1];
+    }
+
+    /**
+     * Key consists of identifier of employee, version and size.
+     * 
+     * <p>
+     * Identifier is hashed, so key can be used as name of file.
+     */
+    private static String createKey(EmployeeRecord employee, int size)
+            throws IOException {
+        String uidHash = DigestUtils.md5DigestAsHex(employee.getUid()
+                .getBytes("UTF-8"));
+        return uidHash + '-' + employee.getVersion() + '-' + size;
+    }
+
+    /**
+     * Versions of records are timestamps in UTC.
+     */
+    private static long getLastModified(String version) {
+        if (version == null || version.length() < 14) {
+            return -1;
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(version.substring(0, 14)).getTime();
+        } catch (ParseException exception) {
+            return -1;
+        }
+    }
+
+}
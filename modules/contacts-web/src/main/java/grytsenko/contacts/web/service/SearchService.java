@@ -19,15 +19,34 @@ import grytsenko.contacts.api.Contact;
 import grytsenko.contacts.web.data.EmployeeDetails;
 import grytsenko.contacts.web.data.EmployeeDetailsRepository;
 import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.EmployeeRecordHandler;
 import grytsenko.contacts.web.data.EmployeeRecordRepository;
+import grytsenko.contacts.web.data.Projection;
 import grytsenko.contacts.web.data.mapper.ContactMapper;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -40,10 +59,37 @@ public class SearchService {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(SearchService.class);
 
+    /**
+     * The maximum number of identifiers in single query for details.
+     */
+    private static final int DETAILS_CHUNK_SIZE = 500;
+
+    /**
+     * The maximum time in seconds to wait for details of page of employees.
+     */
+    private static final int DETAILS_TIMEOUT = 10;
+
+    /**
+     * The maximum number of pages, that wait for their details.
+     */
+    private static final int PENDING_PAGES_LIMIT = 2;
+
+    /**
+     * Details of page, that does not require them.
+     */
+    private static final Future<Map<String, EmployeeDetails>> NO_DETAILS = new AsyncResult<Map<String, EmployeeDetails>>(
+            Collections.<String, EmployeeDetails> emptyMap());
+
     @Autowired
     EmployeeRecordRepository employeesRepository;
     @Autowired
     EmployeeDetailsRepository employeesDetailsRepository;
+    @Autowired
+    DetailsFilter detailsFilter;
+
+    @Autowired
+    @Qualifier("detailsExecutor")
+    AsyncTaskExecutor detailsExecutor;
 
     /**
      * Finds contact of employee.
@@ -64,6 +110,22 @@ public class SearchService {
         return createContact(employee);
     }
 
+    /**
+     * Finds contact of employee, whose record is already known.
+     * 
+     * @param employee
+     *            the record of employee.
+     * 
+     * @return the found contact.
+     */
+    public Contact findEmployee(EmployeeRecord employee) {
+        if (employee == null) {
+            throw new IllegalArgumentException("Employee not defined.");
+        }
+
+        return createContact(employee);
+    }
+
     /**
      * Finds contacts of coworkers of employee.
      * 
@@ -73,35 +135,213 @@ public class SearchService {
      * @return the list of found contacts.
      */
     public List<Contact> findCoworkers(String employeeUid) {
-        if (!StringUtils.hasLength(employeeUid)) {
-            throw new IllegalArgumentException("UID not defined.");
+        final List<Contact> contacts = new ArrayList<Contact>();
+        findCoworkers(employeeUid, new ContactHandler() {
+            @Override
+            public void handle(Contact contact) {
+                contacts.add(contact);
+            }
+        });
+
+        return contacts;
+    }
+
+    /**
+     * Finds contacts of coworkers of employee and passes them to handler as
+     * soon as they are found.
+     * 
+     * <p>
+     * Contacts are not collected, so memory does not depend on number of
+     * coworkers.
+     * 
+     * @param employeeUid
+     *            the unique identifier of employee.
+     * @param handler
+     *            the handler for found contacts.
+     */
+    public void findCoworkers(String employeeUid, ContactHandler handler) {
+        findCoworkers(findRecord(employeeUid), handler);
+    }
+
+    /**
+     * Finds contacts of coworkers of employee, whose record is already known,
+     * and passes them to handler as soon as they are found.
+     * 
+     * @param employee
+     *            the record of employee.
+     * @param handler
+     *            the handler for found contacts.
+     */
+    public void findCoworkers(EmployeeRecord employee, ContactHandler handler) {
+        findCoworkers(employee, Projection.ALL, handler);
+    }
+
+    /**
+     * Finds contacts of coworkers of employee, where only properties of
+     * projection are filled, and passes them to handler as soon as they are
+     * found.
+     * 
+     * <p>
+     * Details are not loaded, if projection does not require them.
+     * 
+     * @param employee
+     *            the record of employee.
+     * @param projection
+     *            the required properties of contacts.
+     * @param handler
+     *            the handler for found contacts.
+     */
+    public void findCoworkers(EmployeeRecord employee, Projection projection,
+            final ContactHandler handler) {
+        if (employee == null) {
+            throw new IllegalArgumentException("Employee not defined.");
+        }
+
+        final String employeeUid = employee.getUid();
+        findLocationContacts(employee, projection, new ContactHandler() {
+            @Override
+            public void handle(Contact contact) {
+                if (!employeeUid.equals(contact.getUid())) {
+                    handler.handle(contact);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds contacts of all employees from location of employee.
+     * 
+     * @param employeeUid
+     *            the unique identifier of employee.
+     * 
+     * @return the list of found contacts, including contact of employee.
+     */
+    public List<Contact> findLocationContacts(String employeeUid) {
+        return findLocationContacts(findRecord(employeeUid));
+    }
+
+    /**
+     * Finds contacts of all employees from location of employee, whose record
+     * is already known.
+     * 
+     * @param employee
+     *            the record of employee.
+     * 
+     * @return the list of found contacts, including contact of employee.
+     */
+    public List<Contact> findLocationContacts(EmployeeRecord employee) {
+        final List<Contact> contacts = new ArrayList<Contact>();
+        findLocationContacts(employee, Projection.ALL, new ContactHandler() {
+            @Override
+            public void handle(Contact contact) {
+                contacts.add(contact);
+            }
+        });
+
+        return contacts;
+    }
+
+    /**
+     * Finds contacts of several employees and passes them to handler as soon
+     * as they are found.
+     * 
+     * <p>
+     * Employees are received from DS by chunks, details for each chunk are
+     * loaded by single query in background. Order of contacts is not defined.
+     * 
+     * @param employeeUids
+     *            the unique identifiers of employees.
+     * @param handler
+     *            the handler for found contacts, employees that were not found
+     *            are skipped.
+     */
+    public void findEmployees(Collection<String> employeeUids,
+            ContactHandler handler) {
+        if (employeeUids == null) {
+            throw new IllegalArgumentException("UIDs not defined.");
+        }
+
+        Set<String> uids = new LinkedHashSet<String>(employeeUids);
+        uids.remove(null);
+        if (uids.isEmpty()) {
+            return;
+        }
+
+        LOGGER.debug("Search {} employees.", uids.size());
+        PendingPages pendingPages = new PendingPages(handler, true);
+        try {
+            employeesRepository.findByUids(uids, pendingPages);
+            pendingPages.flush();
+        } finally {
+            pendingPages.cancel();
+        }
+    }
+
+    /**
+     * Finds contacts of all employees from location of employee.
+     * 
+     * <p>
+     * Employees are received from DS by pages. Details for each page are
+     * loaded in background, while next pages are received. Only few pages are
+     * kept in memory at once.
+     */
+    private void findLocationContacts(EmployeeRecord employee,
+            Projection projection, ContactHandler handler) {
+        if (employee == null) {
+            throw new IllegalArgumentException("Employee not defined.");
         }
 
-        LOGGER.debug("Search employee {}.", employeeUid);
-        EmployeeRecord employee = employeesRepository.findByUid(employeeUid);
         String location = employee.getLocation();
-        LOGGER.debug("Location of {} is {}.", employeeUid, location);
+        LOGGER.debug("Location of {} is {}.", employee.getUid(), location);
 
         LOGGER.debug("Search employees from {}.", location);
-        List<EmployeeRecord> coworkers = employeesRepository
-                .findByLocation(location);
-        LOGGER.debug("Found {} employees.", coworkers.size());
-
-        List<Contact> contacts = new ArrayList<Contact>();
-        for (EmployeeRecord coworker : coworkers) {
-            String coworkerUid = coworker.getUid();
-            if (employeeUid.equals(coworkerUid)) {
-                continue;
-            }
+        PendingPages pendingPages = new PendingPages(handler,
+                projection.needsDetails());
+        try {
+            employeesRepository.findByLocation(location, projection,
+                    pendingPages);
+            pendingPages.flush();
+        } finally {
+            pendingPages.cancel();
+        }
+    }
 
-            contacts.add(createContact(coworker));
+    private EmployeeRecord findRecord(String employeeUid) {
+        if (!StringUtils.hasLength(employeeUid)) {
+            throw new IllegalArgumentException("UID not defined.");
         }
 
-        return contacts;
+        LOGGER.debug("Search employee {}.", employeeUid);
+        return employeesRepository.findByUid(employeeUid);
+    }
+
+    /**
+     * Starts loading of details for page of employees.
+     */
+    private PendingPage loadDetails(List<EmployeeRecord> employees) {
+        final List<String> uids = new ArrayList<String>();
+        for (EmployeeRecord found : employees) {
+            uids.add(found.getUid());
+        }
+
+        Future<Map<String, EmployeeDetails>> details = detailsExecutor
+                .submit(new Callable<Map<String, EmployeeDetails>>() {
+                    @Override
+                    public Map<String, EmployeeDetails> call() {
+                        return findDetails(uids);
+                    }
+                });
+
+        return new PendingPage(new ArrayList<EmployeeRecord>(employees),
+                details);
     }
 
     private Contact createContact(EmployeeRecord employee) {
         String uid = employee.getUid();
+        if (!detailsFilter.mayHaveDetails(uid)) {
+            return ContactMapper.map(employee, null);
+        }
+
         EmployeeDetails details = employeesDetailsRepository.findOne(uid);
         if (details != null) {
             LOGGER.debug("Found detailed information for {}.", employee);
@@ -110,4 +350,136 @@ public class SearchService {
         return ContactMapper.map(employee, details);
     }
 
+    /**
+     * Finds detailed information for several employees.
+     * 
+     * <p>
+     * Employees without details are skipped. Other identifiers are split
+     * into chunks to keep queries reasonably small.
+     * 
+     * @return the found details mapped by identifiers of employees.
+     */
+    private Map<String, EmployeeDetails> findDetails(Collection<String> uids) {
+        Map<String, EmployeeDetails> details = new HashMap<String, EmployeeDetails>();
+
+        List<String> allUids = detailsFilter.filter(uids);
+        for (int from = 0; from < allUids.size(); from += DETAILS_CHUNK_SIZE) {
+            int to = Math.min(from + DETAILS_CHUNK_SIZE, allUids.size());
+            List<EmployeeDetails> chunk = employeesDetailsRepository
+                    .findByUidIn(allUids.subList(from, to));
+            for (EmployeeDetails found : chunk) {
+                details.put(found.getUid(), found);
+            }
+        }
+        LOGGER.debug("Found detailed information for {} employees.",
+                details.size());
+
+        return details;
+    }
+
+    /**
+     * Pages of employees, which wait for details.
+     * 
+     * <p>
+     * Contacts of the oldest pages are passed to handler, when too many pages
+     * wait for details.
+     */
+    private class PendingPages implements EmployeeRecordHandler {
+
+        private final Queue<PendingPage> pages = new LinkedList<PendingPage>();
+        private final ContactHandler handler;
+        private final boolean withDetails;
+
+        public PendingPages(ContactHandler handler, boolean withDetails) {
+            this.handler = handler;
+            this.withDetails = withDetails;
+        }
+
+        @Override
+        public void handle(List<EmployeeRecord> employees) {
+            LOGGER.debug("Found {} employees.", employees.size());
+
+            if (withDetails) {
+                pages.add(loadDetails(employees));
+            } else {
+                pages.add(new PendingPage(new ArrayList<EmployeeRecord>(
+                        employees), NO_DETAILS));
+            }
+            while (pages.size() > PENDING_PAGES_LIMIT) {
+                pages.remove().handle(handler);
+            }
+        }
+
+        /**
+         * Waits for details of all pages and passes contacts to handler.
+         */
+        public void flush() {
+            while (!pages.isEmpty()) {
+                pages.remove().handle(handler);
+            }
+        }
+
+        /**
+         * Cancels loading of details for remaining pages.
+         */
+        public void cancel() {
+            for (PendingPage page : pages) {
+                page.cancel();
+            }
+            pages.clear();
+        }
+
+    }
+
+    /**
+     * Page of employees, which waits for details.
+     */
+    private static class PendingPage {
+
+        private final List<EmployeeRecord> employees;
+        private final Future<Map<String, EmployeeDetails>> details;
+
+        public PendingPage(List<EmployeeRecord> employees,
+                Future<Map<String, EmployeeDetails>> details) {
+            this.employees = employees;
+            this.details = details;
+        }
+
+        /**
+         * Waits for details and passes contacts to handler.
+         */
+        public void handle(ContactHandler handler) {
+            Map<String, EmployeeDetails> found = waitForDetails();
+            for (EmployeeRecord employee : employees) {
+                handler.handle(ContactMapper.map(employee,
+                        found.get(employee.getUid())));
+            }
+        }
+
+        public void cancel() {
+            details.cancel(true);
+        }
+
+        private Map<String, EmployeeDetails> waitForDetails() {
+            try {
+                return details.get(DETAILS_TIMEOUT, TimeUnit.SECONDS);
+            } catch (TimeoutException exception) {
+                details.cancel(true);
+                throw new TransientDataAccessResourceException(
+                        "Details not loaded in time.", exception);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Details not loaded.",
+                        exception);
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Details not loaded.", cause);
+            }
+        }
+
+    }
+
 }
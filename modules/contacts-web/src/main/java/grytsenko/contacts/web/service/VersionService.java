@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.service;
+
+import grytsenko.contacts.web.data.EmployeeRecord;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds versions of coworkers.
+ * 
+ * <p>
+ * Versions are computed from contacts of locations kept by
+ * {@link LocationService}, so version is changed as soon as these contacts
+ * are changed or loaded again, and never lags behind contacts of coworkers.
+ */
+@Service
+public class VersionService {
+
+    @Autowired
+    LocationService locationService;
+
+    /**
+     * Finds version of coworkers of employee.
+     * 
+     * <p>
+     * Version is equal to ETag of contacts of coworkers without quotes.
+     * 
+     * @param employee
+     *            the record of employee.
+     * 
+     * @return the version of coworkers.
+     */
+    public String findCoworkersVersion(EmployeeRecord employee) {
+        if (employee == null) {
+            throw new IllegalArgumentException("Employee not defined.");
+        }
+
+        return locationService.findLocation(employee)
+                .getDigestWithout(employee.getUid()).toString();
+    }
+
+}
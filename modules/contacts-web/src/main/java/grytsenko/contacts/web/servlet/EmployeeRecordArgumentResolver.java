@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.servlet;
+
+import grytsenko.contacts.web.data.EmployeeRecord;
+import grytsenko.contacts.web.data.EmployeeRecordRepository;
+import grytsenko.contacts.web.security.EmployeeUserDetails;
+
+import java.security.Principal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Passes record of current user to handlers, that have argument of type
+ * {@link EmployeeRecord}.
+ * 
+ * <p>
+ * Record is taken from details of user, that were created during
+ * authentication. If details have no record, then it is requested from DS.
+ */
+public class EmployeeRecordArgumentResolver implements
+        HandlerMethodArgumentResolver {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(EmployeeRecordArgumentResolver.class);
+
+    @Autowired
+    EmployeeRecordRepository employeesRepository;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return EmployeeRecord.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter,
+            ModelAndViewContainer mavContainer, NativeWebRequest webRequest,
+            WebDataBinderFactory binderFactory) throws Exception {
+        Principal principal = webRequest.getUserPrincipal();
+        if (principal == null) {
+            return null;
+        }
+
+        EmployeeRecord record = EmployeeUserDetails.findRecord(principal);
+        if (record != null) {
+            return record;
+        }
+
+        LOGGER.debug("Record of {} not known.", principal.getName());
+        return employeesRepository.findByUid(principal.getName());
+    }
+
+}
@@ -15,6 +15,9 @@
  */
 package grytsenko.contacts.web.servlet;
 
+import grytsenko.contacts.web.metrics.Metrics;
+import grytsenko.contacts.web.metrics.MetricsInterceptor;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -24,7 +27,7 @@ import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.handler.SimpleMappingExceptionResolver;
 
 /**
- * This resolver additionally performs logging.
+ * This resolver additionally performs logging and counts errors of handlers.
  */
 public class LoggingExceptionResolver extends SimpleMappingExceptionResolver {
 
@@ -36,6 +39,12 @@ public class LoggingExceptionResolver extends SimpleMappingExceptionResolver {
             HttpServletResponse response, Object handler, Exception exception) {
         LOGGER.error("Internal error.", exception);
 
+        String name = MetricsInterceptor.getHandlerName(handler);
+        if (name != null) {
+            Metrics.counter("http_handler_errors_total", "handler", name)
+                    .incrementAndGet();
+        }
+
         return super.resolveException(request, response, handler, exception);
     }
 
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.util;
+
+import grytsenko.contacts.api.Contact;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sorts contacts by full name of employee.
+ * 
+ * <p>
+ * Names are compared with locale-aware collation. Collation keys are built
+ * once for each contact, so sorting does not compare strings repeatedly.
+ */
+public final class FullNameCollator {
+
+    private FullNameCollator() {
+    }
+
+    /**
+     * Sorts contacts by last name, then by first name.
+     * 
+     * @param contacts
+     *            the contacts to sort.
+     * @param locale
+     *            the locale of names.
+     * 
+     * @return the new sorted list.
+     */
+    public static List<Contact> sort(Collection<Contact> contacts,
+            Locale locale) {
+        Collator collator = Collator.getInstance(locale);
+
+        SortKey[] keys = new SortKey[contacts.size()];
+        int i = 0;
+        for (Contact contact : contacts) {
+            keys[i++] = new SortKey(contact, collator);
+        }
+        Arrays.sort(keys);
+
+        List<Contact> sorted = new ArrayList<Contact>(keys.length);
+        for (SortKey key : keys) {
+            sorted.add(key.contact);
+        }
+        return sorted;
+    }
+
+    /**
+     * Collation keys of names of contact.
+     */
+    private static class SortKey implements Comparable<SortKey> {
+
+        private final Contact contact;
+        private final CollationKey lastName;
+        private final CollationKey firstName;
+
+        public SortKey(Contact contact, Collator collator) {
+            this.contact = contact;
+            this.lastName = collator.getCollationKey(asText(contact
+                    .getLastName()));
+            this.firstName = collator.getCollationKey(asText(contact
+                    .getFirstName()));
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            int lastNames = lastName.compareTo(other.lastName);
+            if (lastNames != 0) {
+                return lastNames;
+            }
+
+            return firstName.compareTo(other.firstName);
+        }
+
+        private static String asText(String name) {
+            return name != null ? name.trim() : "";
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.util;
+
+import grytsenko.contacts.api.Contact;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Digest of versions of several contacts.
+ *
+ * <p>
+ * Digest does not depend on order of contacts. Contacts can be added to and
+ * removed from digest one by one.
+ */
+public final class VersionDigest {
+
+    private long value;
+
+    /**
+     * Creates digest of versions of the given contacts.
+     */
+    public static VersionDigest of(Collection<Contact> contacts) {
+        VersionDigest digest = new VersionDigest();
+        for (Contact contact : contacts) {
+            digest.add(contact.getUid(), contact.getVersion());
+        }
+        return digest;
+    }
+
+    /**
+     * Creates digest of empty set of contacts.
+     */
+    public VersionDigest() {
+    }
+
+    private VersionDigest(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Adds version of contact to digest.
+     */
+    public void add(String uid, String version) {
+        value += hash(uid, version);
+    }
+
+    /**
+     * Removes version of contact, that was added earlier, from digest.
+     */
+    public void remove(String uid, String version) {
+        value -= hash(uid, version);
+    }
+
+    /**
+     * Creates independent copy of this digest.
+     */
+    public VersionDigest copy() {
+        return new VersionDigest(value);
+    }
+
+    /**
+     * Returns the digest as the string of 16 hexadecimal digits.
+     */
+    @Override
+    public String toString() {
+        String hex = Long.toHexString(value);
+        StringBuilder digest = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; ++i) {
+            digest.append('0');
+        }
+        return digest.append(hex).toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof VersionDigest)) {
+            return false;
+        }
+
+        return value == ((VersionDigest) obj).value;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (value ^ (value >>> 32));
+    }
+
+    private static long hash(String uid, String version) {
+        byte[] md5;
+        try {
+            md5 = DigestUtils.md5Digest((uid + '\n' + version)
+                    .getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException exception) {
+            throw new IllegalStateException("UTF-8 not supported.", exception);
+        }
+
+        long hash = 0;
+        for (int i = 0; i < 8; ++i) {
+            hash = (hash << 8) | (md5[i] & 0xFF);
+        }
+        return hash;
+    }
+
+}
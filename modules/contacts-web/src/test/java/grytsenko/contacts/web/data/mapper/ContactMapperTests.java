@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2013 Anton Grytsenko (anthony.grytsenko@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grytsenko.contacts.web.data.mapper;
+
+import static org.junit.Assert.assertEquals;
+import grytsenko.contacts.api.Contact;
+import grytsenko.contacts.web.data.EmployeeDetails;
+import grytsenko.contacts.web.data.EmployeeRecord;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+
+import org.dozer.DozerBeanMapper;
+import org.dozer.Mapper;
+import org.junit.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Checks that {@link ContactMapper} creates the same contacts as mapping by
+ * Dozer, which it replaced.
+ */
+public class ContactMapperTests {
+
+    private final Mapper dozer = new DozerBeanMapper();
+
+    @Test
+    public void mapsRecordWithoutDetails() {
+        checkSameContact(createRecord("jdoe", "20130101120000Z"), null);
+    }
+
+    @Test
+    public void mapsRecordWithDetails() {
+        EmployeeRecord record = createRecord("jdoe", "20130101120000Z");
+        checkSameContact(record, createDetails("jdoe", "jdoe.skype",
+                "Software Engineer", 3));
+    }
+
+    @Test
+    public void mapsRecordWithEmptyProperties() {
+        EmployeeRecord record = new EmployeeRecord();
+        record.setUid("jdoe");
+
+        checkSameContact(record, null);
+        checkSameContact(record, createDetails("jdoe", null, null, 0));
+    }
+
+    @Test
+    public void mapsRecordWithoutVersion() {
+        EmployeeRecord record = createRecord("jdoe", null);
+
+        checkSameContact(record, null);
+        checkSameContact(record, createDetails("jdoe", "jdoe.skype", null, 1));
+    }
+
+    @Test
+    public void mapsDetailsWithoutVersion() {
+        EmployeeRecord record = createRecord("jdoe", "20130101120000Z");
+        checkSameContact(record, createDetails("jdoe", "jdoe.skype",
+                "Software Engineer", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyRecord() {
+        ContactMapper.map(null, null);
+    }
+
+    /**
+     * Compares all properties of contacts created by both mappers.
+     */
+    private void checkSameContact(EmployeeRecord record,
+            EmployeeDetails details) {
+        Contact expected = mapWithDozer(record, details);
+        Contact actual = ContactMapper.map(record, details);
+
+        for (PropertyDescriptor property : BeanUtils
+                .getPropertyDescriptors(Contact.class)) {
+            if (property.getReadMethod() == null
+                    || property.getWriteMethod() == null) {
+                continue;
+            }
+
+            assertEquals(property.getName(), ReflectionUtils.invokeMethod(
+                    property.getReadMethod(), expected),
+                    ReflectionUtils.invokeMethod(property.getReadMethod(),
+                            actual));
+        }
+    }
+
+    /**
+     * Maps contact in the same way as it was done before.
+     */
+    private Contact mapWithDozer(EmployeeRecord record,
+            EmployeeDetails details) {
+        Contact contact = new Contact();
+
+        dozer.map(record, contact);
+        if (details != null) {
+            dozer.map(details, contact);
+        }
+
+        String major = record.getVersion();
+        String minor = details != null ? "." + details.getVersion() : "";
+        contact.setVersion(major + minor);
+
+        return contact;
+    }
+
+    private static EmployeeRecord createRecord(String uid, String version) {
+        EmployeeRecord record = new EmployeeRecord();
+        record.setUid(uid);
+        record.setFirstName("John");
+        record.setLastName("Doe");
+        record.setPhotoUrl("http://photos.test.com/" + uid + ".jpg");
+        record.setMail(uid + "@test.com");
+        record.setPhone("+380001234567");
+        record.setLocation("Kharkiv");
+        record.setVersion(version);
+        return record;
+    }
+
+    private static EmployeeDetails createDetails(String uid, String skype,
+            String position, Integer version) {
+        EmployeeDetails details = BeanUtils
+                .instantiateClass(EmployeeDetails.class);
+        setField(details, "uid", uid);
+        setField(details, "skype", skype);
+        setField(details, "position", position);
+        setField(details, "version", version);
+        return details;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+}